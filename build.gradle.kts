@@ -1,6 +1,7 @@
 plugins {
     `maven-publish`
     id("hytale-mod") version "0.+"
+    alias(libs.plugins.jmh)
 }
 
 group = "com.example"
@@ -40,6 +41,30 @@ java {
 
 }
 
+// NoiseFieldVectors uses the incubating Vector API, so it gets a source set of its own and only that
+// compile sees the module; servers without the module fall back to scalar loops
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+val vector = sourceSets.create("vector") {
+    compileClasspath += sourceSets.main.get().output
+}
+
+configurations.named("vectorCompileOnly") {
+    extendsFrom(configurations.compileOnly.get())
+}
+
+tasks.named<JavaCompile>("compileVectorJava") {
+    options.compilerArgs.addAll(vectorModule)
+}
+
+tasks.named<Jar>("jar") {
+    from(vector.output)
+}
+
+tasks.named<Jar>("sourcesJar") {
+    from(vector.allSource)
+}
+
 tasks.named<ProcessResources>("processResources") {
     var replaceProperties = mapOf(
         "plugin_group" to findProperty("plugin_group"),
@@ -66,6 +91,37 @@ hytale {
 
 }
 
+// Microbenchmarks for the ore generation hot paths: ./gradlew jmh
+// Chunk/world access is backed by in-memory stand-ins, so no server is needed.
+configurations.named("jmhImplementation") {
+    extendsFrom(configurations.compileOnly.get())
+}
+
+dependencies {
+    "jmhRuntimeOnly"(vector.output)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    profilers.add("gc")
+    benchmarkMode.addAll("avgt")
+    timeUnit = "ns"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+    jvmArgsAppend.addAll(vectorModule)
+}
+
+// Headless generation over synthetic chunks: ./gradlew simulate --args="--chunks 4096 --seeds 1,2"
+tasks.register<JavaExec>("simulate") {
+    group = "verification"
+    description = "Runs ore generation over synthetic chunks and reports throughput and placement stats."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.greatdani.coaloreplugin.ChunkSimulator"
+    jvmArgs(vectorModule)
+}
+
 tasks.withType<Jar> {
     manifest {
         attributes["Specification-Title"] = rootProject.name
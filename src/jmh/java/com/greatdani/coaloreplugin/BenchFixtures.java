@@ -0,0 +1,63 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Synthetic block ids, ores and plans shared by the benchmarks. Nothing here
+ * touches the asset registry, so it runs without a game server.
+ */
+final class BenchFixtures {
+
+    static final int AIR = 0;
+    static final int STONE = 1;
+    static final int SLATE = 2;
+    static final int BASALT = 3;
+    static final int DIRT = 4;
+
+    static final int SURFACE_Y = 120;
+
+    private BenchFixtures() {
+    }
+
+    /**
+     * Three coal variants plus {@code customOres} custom ores that all compete for stone.
+     */
+    static BlockCache.BlockCaches cache(int customOres) {
+        List<BlockCache.OreType> ores = new ArrayList<>();
+        ores.add(new BlockCache.OreType(100, null, "Ore_Coal_Stone", Set.of(STONE), 10, 120));
+        ores.add(new BlockCache.OreType(101, null, "Ore_Coal_Slate", Set.of(SLATE), 10, 120));
+        ores.add(new BlockCache.OreType(102, null, "Ore_Coal_Basalt", Set.of(BASALT), 10, 120));
+        for (int i = 0; i < customOres; i++) {
+            ores.add(new BlockCache.OreType(200 + i, null, "Ore_Custom_" + i, Set.of(STONE, SLATE), 20 + i, 90));
+        }
+        return new BlockCache.BlockCaches(ores);
+    }
+
+    static GenerationPlan plan(BlockCache.BlockCaches cache, int veinsPerChunk, int veinSize, int customOres,
+                               boolean parallel) {
+        GenerationPlan.OrePass coal = new GenerationPlan.OrePass("Coal", 0, null, Distribution.power(1.5),
+                10, 120, -1, -1, veinsPerChunk, veinSize, veinSize, 1.0, VeinShape.BLOB, null, null);
+
+        GenerationPlan.OrePass[] custom = new GenerationPlan.OrePass[customOres];
+        for (int i = 0; i < customOres; i++) {
+            BlockCache.OreType ore = cache.getOreByName("Ore_Custom_" + i);
+            custom[i] = new GenerationPlan.OrePass(ore.name, 0, ore, Distribution.uniform(),
+                    ore.minY, ore.maxY, -1, -1, Math.max(1, veinsPerChunk / 4), veinSize, veinSize, 1.0, VeinShape.BLOB, null, null);
+        }
+
+        return new GenerationPlan(cache, coal, custom, parallel, false, false);
+    }
+
+    /**
+     * Layered terrain: basalt at the bottom, slate, stone, a dirt cap and air above the surface.
+     */
+    static int blockAt(int x, int y, int z) {
+        if (y > SURFACE_Y) return AIR;
+        if (y > SURFACE_Y - 3) return DIRT;
+        if (y < 30) return BASALT;
+        if (y < 60) return SLATE;
+        return STONE;
+    }
+}
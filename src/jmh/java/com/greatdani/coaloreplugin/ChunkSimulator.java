@@ -0,0 +1,314 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless run of natural generation over synthetic chunks. Does per chunk what
+ * onChunkCoalGenerated does (plan, apply, flush) on every core, then reports
+ * throughput, latency, what got placed and a layout hash per seed. Same seed and
+ * settings must give the same hash, whatever the thread count.
+ *
+ * <pre>
+ * ./gradlew simulate --args="--chunks 4096 --seeds 1,2,3 --veins-per-chunk 20 --max-vein-size 17"
+ * </pre>
+ */
+public final class ChunkSimulator {
+
+    private static final int Y_BUCKET = 10;
+
+    private int chunks = 4096;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long[] seeds = {12345L};
+    private int veinsPerChunk;
+    private int minVeinSize;
+    private int maxVeinSize;
+    private int minY;
+    private int maxY;
+    private int minDepth = -1;
+    private int maxDepth = -1;
+    private double spawnChance;
+    private int customOres = 0;
+    private boolean parallelVeins;
+    private VeinShape shape;
+    private String placement = "Veins";
+    private boolean hostRockCensus;
+    private boolean crossChunk;
+    private boolean histogram = true;
+
+    private ChunkSimulator() {
+        // Start from the same defaults a fresh config.json has
+        CoalOreConfig defaults = new CoalOreConfig();
+        veinsPerChunk = defaults.getVeinsPerChunk();
+        minVeinSize = defaults.getMinVeinSize();
+        maxVeinSize = defaults.getMaxVeinSize();
+        minY = defaults.getMinY();
+        maxY = defaults.getMaxY();
+        spawnChance = defaults.getSpawnChance();
+        parallelVeins = defaults.isParallelVeins();
+        shape = VeinShape.byName(defaults.getVeinShape(), VeinShape.BLOB);
+        hostRockCensus = defaults.isHostRockCensus();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ChunkSimulator sim = new ChunkSimulator();
+        sim.parseArgs(args);
+
+        BlockCache.BlockCaches cache = BenchFixtures.cache(sim.customOres);
+        GenerationPlan plan = sim.buildPlan(cache);
+
+        System.out.printf(Locale.ROOT, "chunks=%d threads=%d veinsPerChunk=%d veinSize=%d-%d y=%d-%d depth=%d-%d spawnChance=%.2f customOres=%d shape=%s placement=%s parallelVeins=%s census=%s%n",
+                sim.chunks, sim.threads, sim.veinsPerChunk, sim.minVeinSize, sim.maxVeinSize, sim.minY, sim.maxY, sim.minDepth, sim.maxDepth,
+                sim.spawnChance, sim.customOres, sim.shape.configName, sim.placement, sim.parallelVeins, sim.hostRockCensus);
+
+        ExecutorService pool = Executors.newFixedThreadPool(sim.threads, r -> {
+            Thread t = new Thread(r, "CoalOre-Sim");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // One untimed pass so the JIT has compiled the hot path before we measure
+            sim.run(pool, plan, cache, sim.seeds[0], Math.min(sim.chunks, 512));
+            for (long seed : sim.seeds) {
+                sim.report(seed, cache, sim.run(pool, plan, cache, seed, sim.chunks));
+            }
+        } finally {
+            pool.shutdownNow();
+            VeinPlanner.shutdownParallelPool();
+        }
+    }
+
+    private GenerationPlan buildPlan(BlockCache.BlockCaches cache) {
+        int depthMin = maxDepth >= 0 ? Math.max(0, Math.min(maxDepth, minDepth)) : -1;
+        GenerationPlan.OrePass coal = new GenerationPlan.OrePass("Coal", 0, null, Distribution.power(1.5),
+                minY, maxY, depthMin, maxDepth, veinsPerChunk, minVeinSize, maxVeinSize, spawnChance, shape, NoiseField.compile(placement, new NoiseSettings(), "Coal"), null);
+
+        GenerationPlan.OrePass[] custom = new GenerationPlan.OrePass[customOres];
+        for (int i = 0; i < customOres; i++) {
+            BlockCache.OreType ore = cache.getOreByName("Ore_Custom_" + i);
+            custom[i] = new GenerationPlan.OrePass(ore.name, 0, ore, Distribution.uniform(), ore.minY, ore.maxY, -1, -1,
+                    Math.max(1, veinsPerChunk / 4), minVeinSize, maxVeinSize, spawnChance, shape, null, null);
+        }
+        return new GenerationPlan(cache, coal, custom, parallelVeins, hostRockCensus, crossChunk);
+    }
+
+    private Result run(ExecutorService pool, GenerationPlan plan, BlockCache.BlockCaches cache,
+                       long seed, int chunkCount) throws Exception {
+        SyntheticTerrain terrain = new SyntheticTerrain(seed);
+        int side = (int) Math.ceil(Math.sqrt(chunkCount));
+        AtomicInteger next = new AtomicInteger();
+        long[] latencies = new long[chunkCount];
+
+        // Order-dependent: with several threads the layout hash is no longer stable
+        GenerationMetrics pendingMetrics = new GenerationMetrics();
+        PendingPlacements pending = crossChunk ? new PendingPlacements(Integer.MAX_VALUE, pendingMetrics) : null;
+        Set<Long> generated = ConcurrentHashMap.newKeySet();
+
+        List<Future<Worker>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                Worker worker = new Worker(cache.oreCount());
+                int i;
+                while ((i = next.getAndIncrement()) < chunkCount) {
+                    int chunkX = i % side - side / 2;
+                    int chunkZ = i / side - side / 2;
+                    latencies[i] = worker.generate(terrain, plan, cache, seed, chunkX, chunkZ, pending, generated);
+                }
+                return worker;
+            }));
+        }
+
+        Result result = new Result(cache.oreCount(), latencies);
+        for (Future<Worker> future : futures) {
+            result.merge(future.get());
+        }
+        result.wallNanos = System.nanoTime() - start;
+        if (pending != null) {
+            result.pending = String.format(Locale.ROOT, "  cross-chunk cells: %d stored, %d applied, %d skipped, %d left pending",
+                    pendingMetrics.pendingStored.sum(), pendingMetrics.pendingApplied.sum(),
+                    pendingMetrics.pendingSkipped.sum(), pending.size());
+        }
+        return result;
+    }
+
+    private static final class Worker {
+        final VoxelChunk chunk;
+        long layoutHash;
+        long veins;
+        long nanos;
+
+        Worker(int oreCount) {
+            this.chunk = new VoxelChunk(oreCount);
+        }
+
+        long generate(SyntheticTerrain terrain, GenerationPlan plan, BlockCache.BlockCaches cache,
+                      long seed, int chunkX, int chunkZ, PendingPlacements pending, Set<Long> generated) {
+            chunk.load(terrain, chunkX, chunkZ);
+
+            // Timed section matches the pre-load handler minus the Hytale calls
+            long start = System.nanoTime();
+            ChunkVeinPlan veinPlan = VeinPlanner.plan(plan, null, seed, chunkX, chunkZ);
+            HostRockCensus census = plan.hostRockCensus
+                    ? HostRockCensus.take(chunk, chunkX, chunkZ, cache, plan.minY, plan.maxY) : null;
+            PendingPlacements.Batch spill = pending != null ? PendingPlacements.Batch.acquire() : null;
+            PlacementBuffer buffer = PlacementBuffer.acquire();
+            VeinApplier.apply(chunk, cache, buffer, veinPlan, null, census, spill);
+            if (pending != null) {
+                pending.applyTo(0L, chunk, chunkX, chunkZ, cache, buffer);
+                pending.addAll(0L, chunkX, chunkZ, spill, cache.oreNames(),
+                        (x, z) -> generated.contains(PendingPlacements.key(0L, x, z)));
+                generated.add(PendingPlacements.key(0L, chunkX, chunkZ));
+            }
+            buffer.flush(chunk, chunkX, chunkZ, cache);
+            long elapsed = System.nanoTime() - start;
+
+            nanos += elapsed;
+            veins += veinPlan.veinCount;
+            // Summed so the total doesn't depend on which thread got which chunk
+            layoutHash += OreSeeds.mix64(chunk.layoutHash() ^ OreSeeds.chunkSeed(0, chunkX, chunkZ));
+            return elapsed;
+        }
+    }
+
+    private static final class Result {
+        final long[] placedPerOre;
+        final long[][] placedPerY;
+        final long[] latencies;
+        long layoutHash;
+        long veins;
+        long busyNanos;
+        long wallNanos;
+        String pending;
+
+        Result(int oreCount, long[] latencies) {
+            this.placedPerOre = new long[oreCount];
+            this.placedPerY = new long[oreCount][SyntheticTerrain.height()];
+            this.latencies = latencies;
+        }
+
+        void merge(Worker worker) {
+            for (int o = 0; o < placedPerOre.length; o++) {
+                placedPerOre[o] += worker.chunk.placedPerOre[o];
+                for (int y = 0; y < placedPerY[o].length; y++) {
+                    placedPerY[o][y] += worker.chunk.placedPerY[o][y];
+                }
+            }
+            layoutHash += worker.layoutHash;
+            veins += worker.veins;
+            busyNanos += worker.nanos;
+        }
+    }
+
+    private void report(long seed, BlockCache.BlockCaches cache, Result result) {
+        long[] sorted = result.latencies.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "seed %d  layout %016x%n", seed, result.layoutHash);
+        // Wall time includes building the synthetic terrain, generation time is just the handler's work
+        System.out.printf(Locale.ROOT, "  %.0f chunks/s generation on %d threads, %.0f chunks/s wall incl. terrain, %.1f veins/chunk%n",
+                n / (result.busyNanos / 1e9) * threads, threads, n / (result.wallNanos / 1e9), (double) result.veins / n);
+        System.out.printf(Locale.ROOT, "  latency us  p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted[n - 1] / 1e3);
+
+        long total = 0;
+        for (int o = 0; o < result.placedPerOre.length; o++) {
+            long placed = result.placedPerOre[o];
+            total += placed;
+            if (placed > 0) {
+                System.out.printf(Locale.ROOT, "  %-18s %10d blocks  %8.1f/chunk%n",
+                        cache.getOre(o).name, placed, (double) placed / n);
+            }
+        }
+        System.out.printf(Locale.ROOT, "  %-18s %10d blocks  %8.1f/chunk%n", "total", total, (double) total / n);
+        if (result.pending != null) {
+            System.out.println(result.pending);
+        }
+
+        if (histogram && total > 0) {
+            printHistogram(result);
+        }
+    }
+
+    private static void printHistogram(Result result) {
+        int buckets = SyntheticTerrain.height() / Y_BUCKET + 1;
+        long[] perBucket = new long[buckets];
+        long peak = 1;
+        for (long[] perY : result.placedPerY) {
+            for (int y = 0; y < perY.length; y++) {
+                perBucket[y / Y_BUCKET] += perY[y];
+            }
+        }
+        for (long count : perBucket) {
+            peak = Math.max(peak, count);
+        }
+
+        System.out.println("  blocks by Y:");
+        for (int b = buckets - 1; b >= 0; b--) {
+            if (perBucket[b] == 0) continue;
+            int bar = (int) Math.max(1, perBucket[b] * 50 / peak);
+            System.out.printf(Locale.ROOT, "  %3d-%-3d %10d %s%n",
+                    b * Y_BUCKET, b * Y_BUCKET + Y_BUCKET - 1, perBucket[b], "#".repeat(bar));
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, i)] / 1e3;
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--parallel-veins")) {
+                parallelVeins = true;
+                continue;
+            }
+            if (arg.equals("--cross-chunk")) {
+                crossChunk = true;
+                continue;
+            }
+            if (arg.equals("--census")) {
+                hostRockCensus = true;
+                continue;
+            }
+            if (arg.equals("--no-histogram")) {
+                histogram = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+
+            String value = args[++i];
+            switch (arg) {
+                case "--chunks" -> chunks = Math.max(1, Integer.parseInt(value));
+                case "--threads" -> threads = Math.max(1, Integer.parseInt(value));
+                case "--seeds" -> seeds = Arrays.stream(value.split(",")).mapToLong(s -> Long.parseLong(s.trim())).toArray();
+                case "--veins-per-chunk" -> veinsPerChunk = Integer.parseInt(value);
+                case "--min-vein-size" -> minVeinSize = Integer.parseInt(value);
+                case "--max-vein-size" -> maxVeinSize = Integer.parseInt(value);
+                case "--min-y" -> minY = Integer.parseInt(value);
+                case "--max-y" -> maxY = Integer.parseInt(value);
+                case "--shape" -> shape = VeinShape.byName(value, shape);
+                case "--placement" -> placement = value;
+                case "--min-depth" -> minDepth = Integer.parseInt(value);
+                case "--max-depth" -> maxDepth = Integer.parseInt(value);
+                case "--spawn-chance" -> spawnChance = Double.parseDouble(value);
+                case "--custom-ores" -> customOres = Math.max(0, Integer.parseInt(value));
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+    }
+}
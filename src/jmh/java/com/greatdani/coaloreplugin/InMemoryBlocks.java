@@ -0,0 +1,67 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for chunks and worlds: lazily filled {@code int[]} chunks of
+ * {@link BenchFixtures#blockAt layered terrain}. Writes can be discarded so a
+ * benchmark sees the same terrain on every invocation.
+ */
+final class InMemoryBlocks implements BlockAccess {
+
+    private static final int HEIGHT = CoalOreConfig.WORLD_MAX_Y + 1;
+
+    private final Map<Long, int[]> chunks = new HashMap<>();
+    private final boolean keepWrites;
+
+    long writes;
+
+    InMemoryBlocks(boolean keepWrites) {
+        this.keepWrites = keepWrites;
+    }
+
+    @Override
+    public int getBlock(int x, int y, int z) {
+        if (y < 0 || y >= HEIGHT) {
+            return UNAVAILABLE;
+        }
+        return chunk(x >> CoalOreConfig.CHUNK_SHIFT, z >> CoalOreConfig.CHUNK_SHIFT)[index(x, y, z)];
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, BlockCache.OreType ore) {
+        if (y < 0 || y >= HEIGHT) {
+            return false;
+        }
+        writes++;
+        if (keepWrites) {
+            chunk(x >> CoalOreConfig.CHUNK_SHIFT, z >> CoalOreConfig.CHUNK_SHIFT)[index(x, y, z)] = ore.id;
+        }
+        return true;
+    }
+
+    private int[] chunk(int chunkX, int chunkZ) {
+        long key = ((long) chunkX << 32) ^ (chunkZ & 0xFFFFFFFFL);
+        int[] blocks = chunks.get(key);
+        if (blocks == null) {
+            blocks = new int[CoalOreConfig.CHUNK_SIZE * CoalOreConfig.CHUNK_SIZE * HEIGHT];
+            int baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+            int baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < CoalOreConfig.CHUNK_SIZE; z++) {
+                    for (int x = 0; x < CoalOreConfig.CHUNK_SIZE; x++) {
+                        blocks[index(x, y, z)] = BenchFixtures.blockAt(baseX + x, y, baseZ + z);
+                    }
+                }
+            }
+            chunks.put(key, blocks);
+        }
+        return blocks;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y << (2 * CoalOreConfig.CHUNK_SHIFT)) | ((z & CoalOreConfig.CHUNK_MASK) << CoalOreConfig.CHUNK_SHIFT)
+                | (x & CoalOreConfig.CHUNK_MASK);
+    }
+}
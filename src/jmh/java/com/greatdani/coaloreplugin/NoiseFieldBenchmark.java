@@ -0,0 +1,52 @@
+package com.greatdani.coaloreplugin;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PlacementMode NoiseField: filling a 32x32 slab of the given height, on the
+ * Vector API and on the scalar fallback.
+ */
+@State(Scope.Thread)
+public class NoiseFieldBenchmark {
+
+    @Param({"vector", "scalar"})
+    String engine;
+
+    @Param({"32", "110", "300"})
+    int height;
+
+    private BlockCache.BlockCaches cache;
+    private GenerationPlan plan;
+    private NoiseField field;
+    private NoiseField.Layers layers;
+    private InMemoryBlocks blocks;
+    private int chunk;
+
+    @Setup
+    public void setup() {
+        cache = BenchFixtures.cache(0);
+        plan = BenchFixtures.plan(cache, 20, 10, 0, false);
+        field = NoiseField.compile("NoiseField", new NoiseSettings(), "Coal");
+        NoiseField.Layers vectors = NoiseField.vectorLayers();
+        layers = engine.equals("vector") && vectors != null ? vectors : NoiseField.Layers.SCALAR;
+        blocks = new InMemoryBlocks(false);
+    }
+
+    @Benchmark
+    public ChunkVeinPlan.Builder fillSlab() {
+        int chunkX = chunk++ & 15;
+        ChunkVeinPlan.Builder out = new ChunkVeinPlan.Builder(plan, chunkX, 0);
+        field.plan(out, layers, 1234L, 7L, chunkX, 0, 10, 10 + height - 1, -1);
+        return out;
+    }
+
+    @Benchmark
+    public int fillAndApplySlab() {
+        int chunkX = chunk++ & 15;
+        ChunkVeinPlan.Builder out = new ChunkVeinPlan.Builder(plan, chunkX, 0);
+        field.plan(out, layers, 1234L, 7L, chunkX, 0, 10, 10 + height - 1, -1);
+        PlacementBuffer buffer = PlacementBuffer.acquire();
+        VeinApplier.apply(blocks, cache, buffer, out.build());
+        return buffer.flush(blocks, chunkX, 0, cache);
+    }
+}
@@ -0,0 +1,51 @@
+package com.greatdani.coaloreplugin;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+
+/**
+ * Host-block lookups done for every candidate cell of every vein.
+ */
+@State(Scope.Thread)
+@OperationsPerInvocation(OreLookupBenchmark.SAMPLES)
+public class OreLookupBenchmark {
+    static final int SAMPLES = 1024;
+
+    @Param({"0", "4", "12"})
+    int customOres;
+
+    private BlockCache.BlockCaches cache;
+    private BlockCache.OreType customOre;
+    private int[] blockIds;
+    private int[] ys;
+
+    @Setup
+    public void setup() {
+        cache = BenchFixtures.cache(customOres);
+        customOre = cache.getOre(cache.oreCount() - 1);
+
+        SplittableRandom random = new SplittableRandom(42);
+        blockIds = new int[SAMPLES];
+        ys = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            ys[i] = 1 + random.nextInt(CoalOreConfig.WORLD_MAX_Y);
+            blockIds[i] = BenchFixtures.blockAt(0, ys[i], 0);
+        }
+    }
+
+    @Benchmark
+    public void getOreForBlock(Blackhole bh) {
+        for (int i = 0; i < SAMPLES; i++) {
+            bh.consume(cache.getOreForBlock(blockIds[i], ys[i]));
+        }
+    }
+
+    @Benchmark
+    public void canPlaceAt(Blackhole bh) {
+        for (int i = 0; i < SAMPLES; i++) {
+            bh.consume(customOre.canPlaceAt(blockIds[i], ys[i]));
+        }
+    }
+}
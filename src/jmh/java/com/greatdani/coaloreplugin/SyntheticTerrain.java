@@ -0,0 +1,160 @@
+package com.greatdani.coaloreplugin;
+
+/**
+ * Seeded stand-in terrain for the simulator: rolling surface, wavy
+ * stone/slate/basalt layers, noise caves and scattered air pockets. Cheap
+ * enough that filling a chunk doesn't dominate a run.
+ */
+final class SyntheticTerrain {
+
+    private static final int HEIGHT = CoalOreConfig.WORLD_MAX_Y + 1;
+    private static final int POCKET_CELL = 16;
+
+    // Cave noise is sampled every CAVE_STEP blocks and interpolated in between
+    private static final int CAVE_STEP = 4;
+    private static final int CAVE_XZ = CoalOreConfig.CHUNK_SIZE / CAVE_STEP + 1;
+    private static final int CAVE_Y = (HEIGHT + CAVE_STEP - 1) / CAVE_STEP + 1;
+
+    private final ThreadLocal<double[]> caveLattice = ThreadLocal.withInitial(() -> new double[CAVE_XZ * CAVE_Y * CAVE_XZ]);
+
+    private final long seed;
+
+    SyntheticTerrain(long seed) {
+        this.seed = seed;
+    }
+
+    static int height() {
+        return HEIGHT;
+    }
+
+    /**
+     * Fills {@code out} (indexed y/z/x like {@link VoxelChunk}) with the chunk's blocks.
+     */
+    void fill(int[] out, int chunkX, int chunkZ) {
+        int baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        double[] caves = sampleCaves(baseX, baseZ);
+
+        for (int z = 0; z < CoalOreConfig.CHUNK_SIZE; z++) {
+            for (int x = 0; x < CoalOreConfig.CHUNK_SIZE; x++) {
+                int wx = baseX + x;
+                int wz = baseZ + z;
+                int surface = 110 + (int) (valueNoise2(wx * 0.02, wz * 0.02, 0) * 30);
+                int slateTop = 60 + (int) (valueNoise2(wx * 0.05, wz * 0.05, 1) * 10);
+                int basaltTop = 28 + (int) (valueNoise2(wx * 0.05, wz * 0.05, 2) * 8);
+
+                for (int y = 0; y < HEIGHT; y++) {
+                    int block;
+                    if (y > surface) block = BenchFixtures.AIR;
+                    else if (y > surface - 3) block = BenchFixtures.DIRT;
+                    else if (y < basaltTop) block = BenchFixtures.BASALT;
+                    else if (y < slateTop) block = BenchFixtures.SLATE;
+                    else block = BenchFixtures.STONE;
+
+                    if (block != BenchFixtures.AIR && y > 4 && isCave(caves, x, y, z)) {
+                        block = BenchFixtures.AIR;
+                    }
+                    out[VoxelChunk.index(x, y, z)] = block;
+                }
+            }
+        }
+
+        carvePockets(out, chunkX, chunkZ);
+    }
+
+    private double[] sampleCaves(int baseX, int baseZ) {
+        double[] lattice = caveLattice.get();
+        for (int gy = 0; gy < CAVE_Y; gy++) {
+            for (int gz = 0; gz < CAVE_XZ; gz++) {
+                for (int gx = 0; gx < CAVE_XZ; gx++) {
+                    lattice[(gy * CAVE_XZ + gz) * CAVE_XZ + gx] = valueNoise3((baseX + gx * CAVE_STEP) * 0.04,
+                            gy * CAVE_STEP * 0.06, (baseZ + gz * CAVE_STEP) * 0.04, 3);
+                }
+            }
+        }
+        return lattice;
+    }
+
+    private static boolean isCave(double[] lattice, int x, int y, int z) {
+        int gx = x / CAVE_STEP, gy = y / CAVE_STEP, gz = z / CAVE_STEP;
+        double fx = (x % CAVE_STEP) / (double) CAVE_STEP;
+        double fy = (y % CAVE_STEP) / (double) CAVE_STEP;
+        double fz = (z % CAVE_STEP) / (double) CAVE_STEP;
+
+        int i = (gy * CAVE_XZ + gz) * CAVE_XZ + gx;
+        int dy = CAVE_XZ * CAVE_XZ;
+        double c00 = lerp(fx, lattice[i], lattice[i + 1]);
+        double c10 = lerp(fx, lattice[i + dy], lattice[i + dy + 1]);
+        double c01 = lerp(fx, lattice[i + CAVE_XZ], lattice[i + CAVE_XZ + 1]);
+        double c11 = lerp(fx, lattice[i + dy + CAVE_XZ], lattice[i + dy + CAVE_XZ + 1]);
+        double n = lerp(fz, lerp(fy, c00, c10), lerp(fy, c01, c11));
+
+        // Thin band around the midpoint gives tunnel-like caves
+        return Math.abs(n - 0.5) < 0.04;
+    }
+
+    // One small air sphere per 16x16 column cell, centred somewhere underground
+    private void carvePockets(int[] out, int chunkX, int chunkZ) {
+        int baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        int cells = CoalOreConfig.CHUNK_SIZE / POCKET_CELL;
+
+        for (int cz = 0; cz < cells; cz++) {
+            for (int cx = 0; cx < cells; cx++) {
+                long h = hash(baseX / POCKET_CELL + cx, baseZ / POCKET_CELL + cz, 0, 4);
+                int px = cx * POCKET_CELL + (int) (h & 15);
+                int pz = cz * POCKET_CELL + (int) ((h >>> 4) & 15);
+                int py = 10 + (int) ((h >>> 8) % 90);
+                int r = 2 + (int) ((h >>> 20) & 3);
+
+                for (int y = Math.max(0, py - r); y <= Math.min(HEIGHT - 1, py + r); y++) {
+                    for (int z = Math.max(0, pz - r); z <= Math.min(CoalOreConfig.CHUNK_MASK, pz + r); z++) {
+                        for (int x = Math.max(0, px - r); x <= Math.min(CoalOreConfig.CHUNK_MASK, px + r); x++) {
+                            int dx = x - px, dy = y - py, dz = z - pz;
+                            if (dx * dx + dy * dy + dz * dz <= r * r) {
+                                out[VoxelChunk.index(x, y, z)] = BenchFixtures.AIR;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private double valueNoise2(double x, double z, int salt) {
+        int x0 = (int) Math.floor(x), z0 = (int) Math.floor(z);
+        double fx = smooth(x - x0), fz = smooth(z - z0);
+        double a = lerp(fx, unit(x0, 0, z0, salt), unit(x0 + 1, 0, z0, salt));
+        double b = lerp(fx, unit(x0, 0, z0 + 1, salt), unit(x0 + 1, 0, z0 + 1, salt));
+        return lerp(fz, a, b);
+    }
+
+    private double valueNoise3(double x, double y, double z, int salt) {
+        int x0 = (int) Math.floor(x), y0 = (int) Math.floor(y), z0 = (int) Math.floor(z);
+        double fx = smooth(x - x0), fy = smooth(y - y0), fz = smooth(z - z0);
+        double c00 = lerp(fx, unit(x0, y0, z0, salt), unit(x0 + 1, y0, z0, salt));
+        double c10 = lerp(fx, unit(x0, y0 + 1, z0, salt), unit(x0 + 1, y0 + 1, z0, salt));
+        double c01 = lerp(fx, unit(x0, y0, z0 + 1, salt), unit(x0 + 1, y0, z0 + 1, salt));
+        double c11 = lerp(fx, unit(x0, y0 + 1, z0 + 1, salt), unit(x0 + 1, y0 + 1, z0 + 1, salt));
+        return lerp(fz, lerp(fy, c00, c10), lerp(fy, c01, c11));
+    }
+
+    private double unit(int x, int y, int z, int salt) {
+        return (hash(x, z, y, salt) >>> 11) * 0x1.0p-53;
+    }
+
+    private long hash(int x, int z, int y, int salt) {
+        long h = seed ^ (salt * 0x9E3779B97F4A7C15L);
+        h = OreSeeds.mix64(h ^ x);
+        h = OreSeeds.mix64(h ^ z);
+        return OreSeeds.mix64(h ^ y);
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+}
@@ -0,0 +1,70 @@
+package com.greatdani.coaloreplugin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+
+/**
+ * Natural generation: walking or stamping veins, sampling Y and applying a whole chunk.
+ */
+@State(Scope.Thread)
+public class VeinGenerationBenchmark {
+
+    @Param({"6", "17", "50"})
+    int veinSize;
+
+    @Param({"20", "80"})
+    int veinsPerChunk;
+
+    @Param({"0", "4", "12"})
+    int customOres;
+
+    private BlockCache.BlockCaches cache;
+    private GenerationPlan plan;
+    private InMemoryBlocks blocks;
+    private SplittableRandom random;
+    private int chunk;
+
+    @Setup
+    public void setup() {
+        cache = BenchFixtures.cache(customOres);
+        plan = BenchFixtures.plan(cache, veinsPerChunk, veinSize, customOres, false);
+        blocks = new InMemoryBlocks(false);
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public ChunkVeinPlan.Builder generateVein() {
+        ChunkVeinPlan.Builder out = new ChunkVeinPlan.Builder(plan, 0, 0);
+        VeinPlanner.generateVein(out, 0, 0, random.nextInt(32), 40 + random.nextInt(40), random.nextInt(32),
+                veinSize, random, -1);
+        return out;
+    }
+
+    @Benchmark
+    public ChunkVeinPlan.Builder stampVein() {
+        ChunkVeinPlan.Builder out = new ChunkVeinPlan.Builder(plan, 0, 0);
+        VeinPlanner.stampVein(out, 0, 0, random.nextInt(32), 40 + random.nextInt(40), random.nextInt(32),
+                VeinShape.BLOB.template(random.nextInt(VeinShape.ROTATIONS)), veinSize, -1, -1);
+        return out;
+    }
+
+    @Benchmark
+    public int computeOreY() {
+        return VeinPlanner.computeOreY(plan.coal, random);
+    }
+
+    @Benchmark
+    public ChunkVeinPlan planChunk() {
+        return VeinPlanner.plan(plan, null, 1234L, chunk++ & 15, 0);
+    }
+
+    @Benchmark
+    public int planAndApplyChunk() {
+        int chunkX = chunk++ & 15;
+        ChunkVeinPlan veins = VeinPlanner.plan(plan, null, 1234L, chunkX, 0);
+        PlacementBuffer buffer = PlacementBuffer.acquire();
+        VeinApplier.apply(blocks, cache, buffer, veins);
+        return buffer.flush(blocks, chunkX, 0, cache);
+    }
+}
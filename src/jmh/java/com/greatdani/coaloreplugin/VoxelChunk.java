@@ -0,0 +1,71 @@
+package com.greatdani.coaloreplugin;
+
+/**
+ * One synthetic chunk as a flat {@code int[]}, reused chunk after chunk by a
+ * simulator worker. Writes land in the array and are tallied per ore and per Y,
+ * and folded into a hash of the chunk's layout.
+ */
+final class VoxelChunk implements BlockAccess {
+
+    private final int[] blocks = new int[CoalOreConfig.CHUNK_SIZE * CoalOreConfig.CHUNK_SIZE * SyntheticTerrain.height()];
+
+    // Indexed by OreType.index, then Y
+    final long[] placedPerOre;
+    final long[][] placedPerY;
+
+    private int baseX;
+    private int baseZ;
+    private long layoutHash;
+
+    VoxelChunk(int oreCount) {
+        this.placedPerOre = new long[oreCount];
+        this.placedPerY = new long[oreCount][SyntheticTerrain.height()];
+    }
+
+    static int index(int x, int y, int z) {
+        return (y << (2 * CoalOreConfig.CHUNK_SHIFT)) | (z << CoalOreConfig.CHUNK_SHIFT) | x;
+    }
+
+    void load(SyntheticTerrain terrain, int chunkX, int chunkZ) {
+        baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        layoutHash = 0;
+        terrain.fill(blocks, chunkX, chunkZ);
+    }
+
+    /**
+     * Hash of every write since {@link #load}, in write order. The placement
+     * buffer flushes sorted, so this only depends on what was placed where.
+     */
+    long layoutHash() {
+        return layoutHash;
+    }
+
+    @Override
+    public int getBlock(int x, int y, int z) {
+        int lx = x - baseX;
+        int lz = z - baseZ;
+        if ((lx | lz) < 0 || lx >= CoalOreConfig.CHUNK_SIZE || lz >= CoalOreConfig.CHUNK_SIZE
+                || y < 0 || y >= SyntheticTerrain.height()) {
+            return UNAVAILABLE;
+        }
+        return blocks[index(lx, y, lz)];
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, BlockCache.OreType ore) {
+        int lx = x - baseX;
+        int lz = z - baseZ;
+        if ((lx | lz) < 0 || lx >= CoalOreConfig.CHUNK_SIZE || lz >= CoalOreConfig.CHUNK_SIZE
+                || y < 0 || y >= SyntheticTerrain.height()) {
+            return false;
+        }
+
+        int i = index(lx, y, lz);
+        blocks[i] = ore.id;
+        placedPerOre[ore.index]++;
+        placedPerY[ore.index][y]++;
+        layoutHash = OreSeeds.mix64(layoutHash ^ ((long) i << 20 | ore.index));
+        return true;
+    }
+}
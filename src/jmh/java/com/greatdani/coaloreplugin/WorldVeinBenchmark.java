@@ -0,0 +1,35 @@
+package com.greatdani.coaloreplugin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+
+/**
+ * Command-driven placement (/coalore spawn, generate, fill).
+ */
+@State(Scope.Thread)
+public class WorldVeinBenchmark {
+
+    @Param({"4", "8", "16"})
+    int veinSize;
+
+    private BlockCache.BlockCaches cache;
+    private InMemoryBlocks world;
+    private WorldVeins.Chunks chunks;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        cache = BenchFixtures.cache(0);
+        world = new InMemoryBlocks(false);
+        chunks = (chunkX, chunkZ) -> world;
+        random = new Random(11);
+    }
+
+    @Benchmark
+    public int spawnVeinInWorld() {
+        int x = random.nextInt(256) - 128;
+        int z = random.nextInt(256) - 128;
+        return WorldVeins.spawnVeinInWorld(chunks, cache, x, 20 + random.nextInt(60), z, veinSize, random);
+    }
+}
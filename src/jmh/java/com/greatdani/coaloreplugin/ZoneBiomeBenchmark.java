@@ -0,0 +1,48 @@
+package com.greatdani.coaloreplugin;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Zone/biome lookups: re-requested chunks (cache hits) versus a player flying
+ * along an unexplored frontier (misses that fall through to the source).
+ */
+@State(Scope.Thread)
+public class ZoneBiomeBenchmark {
+
+    private ZoneBiomeResolver resolver;
+    private int hitChunk;
+    private int frontier;
+
+    @Setup
+    public void setup() {
+        ZoneBiomeResolver.ZoneBiome[] zones = new ZoneBiomeResolver.ZoneBiome[8];
+        for (int i = 0; i < zones.length; i++) {
+            zones[i] = new ZoneBiomeResolver.ZoneBiome(ZoneBiomeResolver.ZONES.idOf("Zone" + i),
+                    ZoneBiomeResolver.BIOMES.idOf("Biome" + i));
+        }
+
+        // Roughly the cost shape of a noise lookup
+        resolver = new ZoneBiomeResolver((x, z) -> {
+            double v = 0;
+            for (int octave = 1; octave <= 4; octave++) {
+                v += Math.sin(x * 0.01 * octave) * Math.cos(z * 0.013 * octave) / octave;
+            }
+            return zones[(int) ((v + 2) * 2) & 7];
+        }, 4096);
+
+        for (int i = 0; i < 256; i++) {
+            resolver.resolve(i & 15, i >> 4);
+        }
+    }
+
+    @Benchmark
+    public ZoneBiomeResolver.ZoneBiome cachedChunk() {
+        int i = hitChunk++ & 255;
+        return resolver.resolve(i & 15, i >> 4);
+    }
+
+    @Benchmark
+    public ZoneBiomeResolver.ZoneBiome frontierChunk() {
+        return resolver.resolve(1000 + frontier++, 0);
+    }
+}
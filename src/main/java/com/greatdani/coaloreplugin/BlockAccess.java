@@ -0,0 +1,50 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+
+/**
+ * Block reads and ore writes in world coordinates. Generation code only talks
+ * to this, so it runs the same against a live chunk or an in-memory stand-in.
+ */
+interface BlockAccess {
+
+    // Returned by getBlock when the position can't be read; matches no ore
+    int UNAVAILABLE = Integer.MIN_VALUE;
+
+    int getBlock(int x, int y, int z);
+
+    boolean setBlock(int x, int y, int z, BlockCache.OreType ore);
+
+    static BlockAccess ofChunk(WorldChunk chunk) {
+        return new ChunkAccess(chunk);
+    }
+
+    final class ChunkAccess implements BlockAccess {
+        private final WorldChunk chunk;
+
+        ChunkAccess(WorldChunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int getBlock(int x, int y, int z) {
+            try {
+                return chunk.getBlock(x, y, z);
+            } catch (Exception e) {
+                GenerationMetrics.GLOBAL.recordSwallowed(e);
+                return UNAVAILABLE;
+            }
+        }
+
+        @Override
+        public boolean setBlock(int x, int y, int z, BlockCache.OreType ore) {
+            try {
+                chunk.setBlock(x, y, z, ore.id, ore.type, 0, 0, PlacementBuffer.SET_BLOCK_SETTINGS);
+                return true;
+            } catch (Exception e) {
+                GenerationMetrics.GLOBAL.recordSwallowed(e);
+                return false;
+            }
+        }
+    }
+}
@@ -2,39 +2,150 @@ package com.greatdani.coaloreplugin;
 
 import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
 
-import java.util.List;
-import java.util.Random;
-import java.util.Set;
+import java.util.*;
 
 public class BlockCache {
 
     public static class BlockCaches {
         final List<OreType> oreTypes;
 
+        private final OreType[] ores;
+        private final Map<String, OreType> oresByName;
+
+        // Ore names by index; one array per cache, so identity tells caches apart
+        private final String[] oreNames;
+
+        // Per-ore Y range, indexed by OreType.index
+        private final int[] oreMinY;
+        private final int[] oreMaxY;
+
+        // Dense block id -> ore table. The ores that can replace block id b are
+        // hostOres[hostStart[b] .. hostStart[b + 1]), in registration order.
+        private final int[] hostStart;
+        private final int[] hostOres;
+
+        // Block id -> bitmask of ore indices that can replace it (ignoring Y), null past 64 ores
+        private final long[] hostMasks;
+
         BlockCaches(List<OreType> oreTypes){
             this.oreTypes = oreTypes;
+            this.ores = oreTypes.toArray(new OreType[0]);
+            this.oresByName = new HashMap<>();
+            this.oreNames = new String[ores.length];
+            this.oreMinY = new int[ores.length];
+            this.oreMaxY = new int[ores.length];
+
+            int maxBlockId = -1;
+            for (int i = 0; i < ores.length; i++) {
+                OreType ore = ores[i];
+                ore.index = i;
+                oresByName.putIfAbsent(ore.name, ore);
+                oreNames[i] = ore.name;
+                oreMinY[i] = ore.minY;
+                oreMaxY[i] = ore.maxY;
+                maxBlockId = Math.max(maxBlockId, ore.replaceableMask.length() - 1);
+            }
+
+            // Count hosts per block id, then prefix-sum into slice offsets
+            int[] start = new int[maxBlockId + 2];
+            for (OreType ore : ores) {
+                for (int b = ore.replaceableMask.nextSetBit(0); b >= 0; b = ore.replaceableMask.nextSetBit(b + 1)) {
+                    start[b + 1]++;
+                }
+            }
+            for (int b = 1; b < start.length; b++) {
+                start[b] += start[b - 1];
+            }
+
+            int[] hosts = new int[start[start.length - 1]];
+            int[] fill = Arrays.copyOf(start, start.length);
+            for (OreType ore : ores) {
+                for (int b = ore.replaceableMask.nextSetBit(0); b >= 0; b = ore.replaceableMask.nextSetBit(b + 1)) {
+                    hosts[fill[b]++] = ore.index;
+                }
+            }
+
+            this.hostStart = start;
+            this.hostOres = hosts;
+
+            if (ores.length <= Long.SIZE) {
+                hostMasks = new long[maxBlockId + 1];
+                for (OreType ore : ores) {
+                    for (int b = ore.replaceableMask.nextSetBit(0); b >= 0; b = ore.replaceableMask.nextSetBit(b + 1)) {
+                        hostMasks[b] |= 1L << ore.index;
+                    }
+                }
+            } else {
+                hostMasks = null;
+            }
+        }
+
+        boolean hasHostMasks() {
+            return hostMasks != null;
+        }
+
+        /**
+         * Bitmask of ore indices that can replace {@code blockId} at some height.
+         * Only valid when {@link #hasHostMasks()}.
+         */
+        long hostMask(int blockId) {
+            return blockId >= 0 && blockId < hostMasks.length ? hostMasks[blockId] : 0L;
+        }
+
+        /**
+         * Whether any ore can replace {@code blockId}, ignoring Y.
+         */
+        boolean isHostBlock(int blockId) {
+            return blockId >= 0 && blockId < hostStart.length - 1 && hostStart[blockId + 1] > hostStart[blockId];
+        }
+
+        int oreMinY(int index) {
+            return oreMinY[index];
+        }
+
+        int oreMaxY(int index) {
+            return oreMaxY[index];
+        }
+
+        String[] oreNames() {
+            return oreNames;
         }
 
         OreType getOreByName(String name) {
-            for (OreType ore : oreTypes) {
-                if (ore.name.equals(name)) {
+            return oresByName.get(name);
+        }
+
+        OreType getOre(int index) {
+            return ores[index];
+        }
+
+        int oreCount() {
+            return ores.length;
+        }
+
+        /**
+         * Index of the first ore that can replace {@code blockId} at height {@code y}, or -1.
+         */
+        int oreIndexForBlock(int blockId, int y) {
+            if (blockId < 0 || blockId >= hostStart.length - 1) {
+                return -1;
+            }
+            for (int i = hostStart[blockId], end = hostStart[blockId + 1]; i < end; i++) {
+                int ore = hostOres[i];
+                if (y >= oreMinY[ore] && y <= oreMaxY[ore]) {
                     return ore;
                 }
             }
-            return null;
+            return -1;
         }
 
         OreType getOreForBlock ( int blockId, int y){
-            for (OreType ore : oreTypes) {
-                if (ore.canPlaceAt(blockId, y)) {
-                    return ore;
-                }
-            }
-            return null;
+            int ore = oreIndexForBlock(blockId, y);
+            return ore >= 0 ? ores[ore] : null;
         }
 
         OreType getRandomOre (Random rand){
-            return oreTypes.get(rand.nextInt(oreTypes.size()));
+            return ores[rand.nextInt(ores.length)];
         }
     }
 
@@ -43,9 +154,13 @@ public class BlockCache {
         final BlockType type;
         final String name;
         final Set<Integer> replaceableBlockIds;
+        final BitSet replaceableMask;
         final int minY;
         final int maxY;
 
+        // Position in the owning BlockCaches, assigned when the cache is built
+        int index = -1;
+
         OreType(int id, BlockType type, String name, Set<Integer> replaceableBlockIds, int minY, int maxY) {
             this.id = id;
             this.type = type;
@@ -53,10 +168,17 @@ public class BlockCache {
             this.replaceableBlockIds = replaceableBlockIds;
             this.minY = minY;
             this.maxY = maxY;
+
+            this.replaceableMask = new BitSet();
+            for (int blockId : replaceableBlockIds) {
+                if (blockId >= 0) {
+                    replaceableMask.set(blockId);
+                }
+            }
         }
 
         boolean canReplace(int blockId) {
-            return replaceableBlockIds.contains(blockId);
+            return blockId >= 0 && replaceableMask.get(blockId);
         }
 
         // Add this method
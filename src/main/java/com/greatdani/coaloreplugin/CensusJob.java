@@ -0,0 +1,397 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Counts the ore in the loaded chunks around a point and compares it with what
+ * the current plan would place there. The world thread only copies block ids,
+ * a fixed number of blocks per unit, into a pooled array (the chunk API only
+ * reads single blocks, so the copy's cost is spread over ticks by the job
+ * budget rather than avoided); each finished copy is scanned on
+ * the common pool, which counts the ore per Y band and zone and replays the
+ * plan on the copy (ore read back as its host rock) for the expected counts.
+ * <p>
+ * The replay leaves out veins reaching in from neighbouring chunks, so chunks
+ * generated with cross-chunk veins come out a little above expected.
+ */
+final class CensusJob extends JobScheduler.Job {
+
+    static final int BAND_SHIFT = 4;
+
+    private static final int LAYER = CoalOreConfig.CHUNK_SIZE * CoalOreConfig.CHUNK_SIZE;
+
+    // Blocks copied per unit, whatever the Y range, so each unit costs the world thread about the same
+    private static final int BLOCKS_PER_UNIT = 4 * LAYER;
+
+    // Copies waiting for or being scanned; the world thread waits past this
+    private static final int MAX_IN_FLIGHT = 2 * Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+
+    private final GenerationPlan plan;
+    private final ZoneBiomeResolver resolver;
+    private final long seed;
+
+    // Chunk indices, nearest first
+    private final long[] chunks;
+
+    // Y range copied, enough for the replay to see what generation saw
+    private final int lowY;
+    private final int highY;
+    private final int bands;
+
+    // Block id -> ore index, -1 for anything else; and each ore's stand-in host rock
+    private final int[] oreOfBlock;
+    private final int[] hostOfOre;
+
+    private final Tally tally;
+    private final ConcurrentLinkedQueue<int[]> spare = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private int next;
+    // Next index of copy to fill
+    private int filled;
+    private int[] copy;
+    private WorldChunk chunk;
+    private volatile int notLoaded;
+    private final AtomicInteger failed = new AtomicInteger();
+
+    CensusJob(World world, String worldName, GenerationPlan plan, ZoneBiomeResolver resolver, long seed,
+              int centerChunkX, int centerChunkZ, int chunkRadius, Consumer<String> reporter) {
+        super("Census", world, worldName, reporter);
+        this.plan = plan;
+        this.resolver = resolver;
+        this.seed = seed;
+        this.chunks = chunksAround(centerChunkX, centerChunkZ, chunkRadius);
+
+        // Depth-relative veins need the surface, so then the whole column
+        boolean wholeColumn = plan.hasDepthVeins();
+        this.lowY = wholeColumn ? 0 : HostRockCensus.lowestRead(plan.minY);
+        this.highY = wholeColumn ? CoalOreConfig.WORLD_MAX_Y : HostRockCensus.highestRead(plan.maxY);
+        this.bands = (highY >> BAND_SHIFT) + 1;
+
+        BlockCache.BlockCaches cache = plan.cache;
+        int maxId = 0;
+        for (int i = 0; i < cache.oreCount(); i++) {
+            maxId = Math.max(maxId, cache.getOre(i).id);
+        }
+        this.oreOfBlock = new int[maxId + 1];
+        Arrays.fill(oreOfBlock, -1);
+        this.hostOfOre = new int[cache.oreCount()];
+        for (int i = cache.oreCount() - 1; i >= 0; i--) {
+            BlockCache.OreType ore = cache.getOre(i);
+            if (ore.id >= 0) {
+                oreOfBlock[ore.id] = i;
+            }
+            int host = ore.replaceableMask.nextSetBit(0);
+            hostOfOre[i] = host >= 0 ? host : ore.id;
+        }
+        this.tally = new Tally(cache.oreCount(), bands);
+    }
+
+    private static long[] chunksAround(int centerX, int centerZ, int radius) {
+        List<long[]> found = new ArrayList<>();
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                int distance = dx * dx + dz * dz;
+                if (distance <= radius * radius) {
+                    found.add(new long[]{distance, ChunkUtil.indexChunk(centerX + dx, centerZ + dz)});
+                }
+            }
+        }
+        found.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] chunks = new long[found.size()];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = found.get(i)[1];
+        }
+        return chunks;
+    }
+
+    int totalChunks() {
+        return chunks.length;
+    }
+
+    @Override
+    void beginSlice() {
+        // Chunks can unload between ticks
+        chunk = null;
+    }
+
+    @Override
+    Step step() {
+        if (next >= chunks.length) {
+            if (inFlight.get() > 0) {
+                return Step.YIELD;
+            }
+            for (String line : summary()) {
+                report(line);
+            }
+            return Step.DONE;
+        }
+
+        if (copy == null) {
+            if (inFlight.get() >= MAX_IN_FLIGHT) {
+                return Step.YIELD;
+            }
+            copy = spare.poll();
+            if (copy == null) {
+                copy = new int[(highY - lowY + 1) * LAYER];
+            }
+            filled = 0;
+        }
+
+        if (chunk == null) {
+            chunk = world.getChunkIfInMemory(chunks[next]);
+            if (chunk == null) {
+                // Never loaded, or unloaded partway through; either way not counted
+                notLoaded++;
+                spare.offer(copy);
+                copy = null;
+                next++;
+                return Step.MORE;
+            }
+        }
+
+        int baseX = chunk.getX() << CoalOreConfig.CHUNK_SHIFT;
+        int baseZ = chunk.getZ() << CoalOreConfig.CHUNK_SHIFT;
+        int end = Math.min(copy.length, filled + BLOCKS_PER_UNIT);
+        for (int i = filled; i < end; i++) {
+            int block;
+            try {
+                block = chunk.getBlock(baseX + (i & CoalOreConfig.CHUNK_MASK), lowY + i / LAYER,
+                        baseZ + ((i >> CoalOreConfig.CHUNK_SHIFT) & CoalOreConfig.CHUNK_MASK));
+            } catch (Exception e) {
+                GenerationMetrics.GLOBAL.recordSwallowed(e);
+                block = BlockAccess.UNAVAILABLE;
+            }
+            copy[i] = block;
+        }
+        filled = end;
+
+        if (filled == copy.length) {
+            int[] done = copy;
+            int chunkX = chunk.getX();
+            int chunkZ = chunk.getZ();
+            copy = null;
+            chunk = null;
+            next++;
+            inFlight.incrementAndGet();
+            CompletableFuture.runAsync(() -> {
+                try {
+                    scan(chunkX, chunkZ, done);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    GenerationMetrics.GLOBAL.recordSwallowed(e);
+                } finally {
+                    spare.offer(done);
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        return Step.MORE;
+    }
+
+    // Off the world thread
+    private void scan(int chunkX, int chunkZ, int[] blocks) {
+        BlockCache.BlockCaches cache = plan.cache;
+        long[] found = new long[cache.oreCount() * bands];
+        long[] expected = new long[found.length];
+
+        for (int i = 0; i < blocks.length; i++) {
+            int block = blocks[i];
+            int ore = block >= 0 && block < oreOfBlock.length ? oreOfBlock[block] : -1;
+            if (ore >= 0) {
+                found[ore * bands + ((lowY + i / LAYER) >> BAND_SHIFT)]++;
+            }
+        }
+
+        // Same passes as a newly generated chunk, minus the pending placements of its neighbours
+        // Not generation, so it stays out of the zone/biome rejection count
+        ChunkVeinPlan veins = VeinPlanner.plan(plan, resolver, seed, chunkX, chunkZ, null);
+        Replay replay = new Replay(blocks, chunkX, chunkZ, expected);
+        HostRockCensus census = plan.hostRockCensus
+                ? HostRockCensus.take(replay, chunkX, chunkZ, cache, plan.minY, plan.maxY) : null;
+        PlacementBuffer buffer = PlacementBuffer.acquire();
+        VeinApplier.apply(replay, cache, buffer, veins, null, census, null);
+        buffer.flush(replay, chunkX, chunkZ, cache);
+
+        ZoneBiomeResolver.ZoneBiome zone = resolver != null
+                ? resolver.resolve(chunkX, chunkZ) : ZoneBiomeResolver.ZoneBiome.UNKNOWN;
+        tally.add(zone.zoneId, found, expected);
+    }
+
+    /**
+     * The copied chunk with its ore turned back into host rock. Writes only
+     * count towards {@code expected}.
+     */
+    private final class Replay implements BlockAccess {
+        private final int[] blocks;
+        private final int baseX;
+        private final int baseZ;
+        private final long[] expected;
+
+        Replay(int[] blocks, int chunkX, int chunkZ, long[] expected) {
+            this.blocks = blocks;
+            this.baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+            this.baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+            this.expected = expected;
+        }
+
+        @Override
+        public int getBlock(int x, int y, int z) {
+            int localX = x - baseX;
+            int localZ = z - baseZ;
+            if (y < lowY || y > highY || (localX | localZ) < 0
+                    || localX >= CoalOreConfig.CHUNK_SIZE || localZ >= CoalOreConfig.CHUNK_SIZE) {
+                return UNAVAILABLE;
+            }
+            int block = blocks[(y - lowY) * LAYER + (localZ << CoalOreConfig.CHUNK_SHIFT) + localX];
+            int ore = block >= 0 && block < oreOfBlock.length ? oreOfBlock[block] : -1;
+            return ore >= 0 ? hostOfOre[ore] : block;
+        }
+
+        @Override
+        public boolean setBlock(int x, int y, int z, BlockCache.OreType ore) {
+            expected[ore.index * bands + (y >> BAND_SHIFT)]++;
+            return true;
+        }
+    }
+
+    @Override
+    void ended(State state) {
+        copy = null;
+        chunk = null;
+        spare.clear();
+    }
+
+    @Override
+    String progress() {
+        int scanned = tally.chunks();
+        StringBuilder out = new StringBuilder(String.format("%d/%d chunks scanned, %d not loaded",
+                scanned, chunks.length, notLoaded));
+        if (failed.get() > 0) {
+            out.append(", ").append(failed.get()).append(" failed");
+        }
+        long[] found = tally.oreTotals(false);
+        long[] expected = tally.oreTotals(true);
+        for (int ore = 0; ore < found.length; ore++) {
+            out.append(ore == 0 ? "; " : ", ").append(plan.cache.getOre(ore).name).append(' ')
+                    .append(versus(found[ore], expected[ore]));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Per ore: found against expected, then the same per Y band and per zone.
+     */
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        BlockCache.BlockCaches cache = plan.cache;
+        long[] foundTotals = tally.oreTotals(false);
+        long[] expectedTotals = tally.oreTotals(true);
+        for (int ore = 0; ore < cache.oreCount(); ore++) {
+            StringBuilder bandLine = new StringBuilder();
+            for (int band = 0; band < bands; band++) {
+                long found = tally.found(ore, band);
+                long expected = tally.expected(ore, band);
+                if (found == 0 && expected == 0) continue;
+                bandLine.append(bandLine.isEmpty() ? "  " : ", ")
+                        .append(String.format("Y %d-%d: %s", band << BAND_SHIFT, (band << BAND_SHIFT) + (1 << BAND_SHIFT) - 1,
+                                versus(found, expected)));
+            }
+            lines.add(String.format("%s: %s", cache.getOre(ore).name, versus(foundTotals[ore], expectedTotals[ore])));
+            if (!bandLine.isEmpty()) {
+                lines.add(bandLine.toString());
+            }
+        }
+        for (Map.Entry<String, long[]> zone : tally.zones().entrySet()) {
+            long[] counts = zone.getValue();
+            StringBuilder line = new StringBuilder(String.format("Zone %s (%d chunks)", zone.getKey(), counts[0]));
+            for (int ore = 0; ore < cache.oreCount(); ore++) {
+                line.append(ore == 0 ? ": " : ", ").append(cache.getOre(ore).name).append(' ')
+                        .append(versus(counts[1 + ore * 2], counts[2 + ore * 2]));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static String versus(long found, long expected) {
+        return expected > 0
+                ? String.format("%d/%d (%.0f%%)", found, expected, found * 100.0 / expected)
+                : String.format("%d/0", found);
+    }
+
+    /**
+     * Counts merged from the scanning threads.
+     */
+    private static final class Tally {
+        private final int ores;
+        private final int bands;
+        private final long[] found;
+        private final long[] expected;
+
+        // Zone id -> chunks, then found and expected per ore
+        private final Map<Integer, long[]> zones = new TreeMap<>();
+        private int chunks;
+
+        Tally(int ores, int bands) {
+            this.ores = ores;
+            this.bands = bands;
+            this.found = new long[ores * bands];
+            this.expected = new long[ores * bands];
+        }
+
+        synchronized void add(int zoneId, long[] chunkFound, long[] chunkExpected) {
+            long[] zone = zones.computeIfAbsent(zoneId, id -> new long[1 + ores * 2]);
+            zone[0]++;
+            for (int i = 0; i < found.length; i++) {
+                found[i] += chunkFound[i];
+                expected[i] += chunkExpected[i];
+                zone[1 + (i / bands) * 2] += chunkFound[i];
+                zone[2 + (i / bands) * 2] += chunkExpected[i];
+            }
+            chunks++;
+        }
+
+        synchronized int chunks() {
+            return chunks;
+        }
+
+        synchronized long found(int ore, int band) {
+            return found[ore * bands + band];
+        }
+
+        synchronized long expected(int ore, int band) {
+            return expected[ore * bands + band];
+        }
+
+        synchronized long[] oreTotals(boolean ofExpected) {
+            long[] counts = ofExpected ? expected : found;
+            long[] totals = new long[ores];
+            for (int i = 0; i < counts.length; i++) {
+                totals[i / bands] += counts[i];
+            }
+            return totals;
+        }
+
+        synchronized Map<String, long[]> zones() {
+            Map<String, long[]> named = new TreeMap<>();
+            for (Map.Entry<Integer, long[]> zone : zones.entrySet()) {
+                named.put(ZoneBiomeResolver.ZONES.nameOf(zone.getKey()), zone.getValue().clone());
+            }
+            return named;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+
+/**
+ * The last few chunks a command job wrote to, so neighbouring veins don't look
+ * the same chunk up again. Chunks can unload between ticks, so the owner
+ * clears it at the start of every tick; only use it on the world thread.
+ */
+final class ChunkHandles implements WorldVeins.Chunks {
+
+    // A fill slice touches a handful of chunks; past this the oldest is replaced
+    private static final int SIZE = 16;
+
+    // Cached for chunks that aren't loaded, so they aren't looked up again either
+    private static final BlockAccess NOT_LOADED = new BlockAccess() {
+        @Override
+        public int getBlock(int x, int y, int z) {
+            return UNAVAILABLE;
+        }
+
+        @Override
+        public boolean setBlock(int x, int y, int z, BlockCache.OreType ore) {
+            return false;
+        }
+    };
+
+    private final World world;
+    private final long[] keys = new long[SIZE];
+    private final BlockAccess[] chunks = new BlockAccess[SIZE];
+    private int size;
+    private int next;
+
+    ChunkHandles(World world) {
+        this.world = world;
+    }
+
+    @Override
+    public BlockAccess chunk(int chunkX, int chunkZ) {
+        long key = ChunkUtil.indexChunk(chunkX, chunkZ);
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                return chunks[i] != NOT_LOADED ? chunks[i] : null;
+            }
+        }
+
+        BlockAccess chunk = NOT_LOADED;
+        try {
+            WorldChunk loaded = (WorldChunk) world.getNonTickingChunk(key);
+            if (loaded != null) {
+                chunk = BlockAccess.ofChunk(loaded);
+            }
+        } catch (Exception e) {
+            GenerationMetrics.GLOBAL.recordSwallowed(e);
+        }
+
+        keys[next] = key;
+        chunks[next] = chunk;
+        next = (next + 1) % SIZE;
+        size = Math.max(size, next == 0 ? SIZE : next);
+        return chunk != NOT_LOADED ? chunk : null;
+    }
+
+    void clear() {
+        size = 0;
+        next = 0;
+    }
+}
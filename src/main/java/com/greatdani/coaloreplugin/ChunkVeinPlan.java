@@ -0,0 +1,143 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.Arrays;
+
+/**
+ * Vein layout for one chunk, computed without touching the chunk itself.
+ * <p>
+ * {@code data} holds one record per vein: {@code [oreIndex, targetBlocks, count, depth, spillCount,
+ * pos..., spill...]}, where positions are {@link PlacementBuffer#pack packed} chunk-local
+ * coordinates in walk order and {@code oreIndex} is -1 when the coal variant is picked from
+ * the host block. A {@code depth} of 0 or more means the vein was walked from
+ * {@link #DEPTH_REFERENCE_Y} and is moved to that depth below the surface when applied;
+ * -1 means the positions are final, and {@link #FIELD} that they are final and come from a
+ * {@link NoiseField}, so they are never moved as a whole. Spill entries are the vein's cells in the eight
+ * neighbouring chunks (see {@link #spill}), only recorded when the plan keeps them.
+ */
+final class ChunkVeinPlan {
+    static final int HEADER = 5;
+
+    private static final int SPILL_CHUNK_SHIFT = 19;
+    private static final int SPILL_PACKED_MASK = (1 << SPILL_CHUNK_SHIFT) - 1;
+
+    // Depth-relative veins are walked from here, clear of both world limits
+    static final int DEPTH_REFERENCE_Y = (CoalOreConfig.WORLD_MIN_Y + CoalOreConfig.WORLD_MAX_Y) / 2;
+
+    // Depth of a noise field's cells
+    static final int FIELD = -2;
+
+    final GenerationPlan source;
+    final int chunkX;
+    final int chunkZ;
+    final int[] data;
+    final int veinCount;
+
+    private ChunkVeinPlan(GenerationPlan source, int chunkX, int chunkZ, int[] data, int veinCount) {
+        this.source = source;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.data = data;
+        this.veinCount = veinCount;
+    }
+
+    /**
+     * Spill entry for a packed position in the neighbour at ({@code dx}, {@code dz}), both in -1..1.
+     */
+    static int spill(int dx, int dz, int packed) {
+        return ((dz + 1) << (SPILL_CHUNK_SHIFT + 2)) | ((dx + 1) << SPILL_CHUNK_SHIFT) | packed;
+    }
+
+    static int spillDx(int spill) {
+        return ((spill >> SPILL_CHUNK_SHIFT) & 3) - 1;
+    }
+
+    static int spillDz(int spill) {
+        return ((spill >> (SPILL_CHUNK_SHIFT + 2)) & 3) - 1;
+    }
+
+    static int spillPacked(int spill) {
+        return spill & SPILL_PACKED_MASK;
+    }
+
+    static final class Builder {
+        final GenerationPlan source;
+        private final int chunkX;
+        private final int chunkZ;
+
+        private int[] data = new int[512];
+        private int size;
+        private int veinCount;
+        private int veinStart = -1;
+
+        // Current vein's spill, moved behind its cells in endVein
+        final boolean keepSpill;
+        private int[] spill = new int[64];
+        private int spillSize;
+
+        Builder(GenerationPlan source, int chunkX, int chunkZ) {
+            this.source = source;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.keepSpill = source.crossChunkVeins;
+        }
+
+        void beginVein(int oreIndex, int targetBlocks, int depth) {
+            ensure(HEADER);
+            veinStart = size;
+            data[size++] = oreIndex;
+            data[size++] = targetBlocks;
+            data[size++] = 0;
+            data[size++] = depth;
+            data[size++] = 0;
+            spillSize = 0;
+        }
+
+        void add(int packed) {
+            ensure(1);
+            data[size++] = packed;
+            data[veinStart + 2]++;
+        }
+
+        void addSpill(int entry) {
+            if (spillSize == spill.length) {
+                spill = Arrays.copyOf(spill, spillSize * 2);
+            }
+            spill[spillSize++] = entry;
+        }
+
+        void endVein() {
+            // Veins with no cell in the chunk are dropped, spill and all
+            if (data[veinStart + 2] == 0) {
+                size = veinStart;
+            } else {
+                ensure(spillSize);
+                System.arraycopy(spill, 0, data, size, spillSize);
+                size += spillSize;
+                data[veinStart + 4] = spillSize;
+                veinCount++;
+            }
+            veinStart = -1;
+            spillSize = 0;
+        }
+
+        /**
+         * Appends every finished vein of another builder, in its order.
+         */
+        void append(Builder other) {
+            ensure(other.size);
+            System.arraycopy(other.data, 0, data, size, other.size);
+            size += other.size;
+            veinCount += other.veinCount;
+        }
+
+        ChunkVeinPlan build() {
+            return new ChunkVeinPlan(source, chunkX, chunkZ, Arrays.copyOf(data, size), veinCount);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -22,6 +22,15 @@ public class CoalOreConfig {
                             (cfg, val, info) -> cfg.maxY = val,
                             (cfg, info) -> cfg.maxY)
                     .add()
+                    // Depth below the surface, -1 = off
+                    .append(new KeyedCodec<Integer>("MinDepth", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.minDepth = val,
+                            (cfg, info) -> cfg.minDepth)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxDepth", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.maxDepth = val,
+                            (cfg, info) -> cfg.maxDepth)
+                    .add()
 
                     // Vein settings
                     .append(new KeyedCodec<Integer>("VeinsPerChunk", Codec.INTEGER),
@@ -36,6 +45,22 @@ public class CoalOreConfig {
                             (cfg, val, info) -> cfg.maxVeinSize = val,
                             (cfg, info) -> cfg.maxVeinSize)
                     .add()
+                    .append(new KeyedCodec<String>("VeinShape", Codec.STRING),
+                            (cfg, val, info) -> cfg.veinShape = val,
+                            (cfg, info) -> cfg.veinShape)
+                    .add()
+                    .append(new KeyedCodec<Distribution>("Distribution", Distribution.CODEC),
+                            (cfg, val, info) -> cfg.distribution = val,
+                            (cfg, info) -> cfg.distribution)
+                    .add()
+                    .append(new KeyedCodec<String>("PlacementMode", Codec.STRING),
+                            (cfg, val, info) -> cfg.placementMode = val,
+                            (cfg, info) -> cfg.placementMode)
+                    .add()
+                    .append(new KeyedCodec<NoiseSettings>("NoiseField", NoiseSettings.CODEC),
+                            (cfg, val, info) -> cfg.noiseField = val,
+                            (cfg, info) -> cfg.noiseField)
+                    .add()
 
                     // Spawn chance (0.0 to 1.0)
                     .append(new KeyedCodec<Double>("SpawnChance", Codec.DOUBLE),
@@ -56,6 +81,56 @@ public class CoalOreConfig {
                             (ore, val, info) -> ore.allowedBiomes = val,
                             (ore, info) -> ore.allowedBiomes)
                     .add()
+                    .append(new KeyedCodec<String[]>("Profiles", Codec.STRING_ARRAY),
+                            (ore, val, info) -> ore.profiles = val,
+                            (ore, info) -> ore.profiles)
+                    .add()
+                    // Background vein planning (0 = plan inline on the chunk thread)
+                    .append(new KeyedCodec<Integer>("PlannerThreads", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.plannerThreads = val,
+                            (cfg, info) -> cfg.plannerThreads)
+                    .add()
+                    .append(new KeyedCodec<Integer>("PrePlanDistance", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.prePlanDistance = val,
+                            (cfg, info) -> cfg.prePlanDistance)
+                    .add()
+                    .append(new KeyedCodec<Boolean>("ParallelVeins", Codec.BOOLEAN),
+                            (cfg, val, info) -> cfg.parallelVeins = val,
+                            (cfg, info) -> cfg.parallelVeins)
+                    .add()
+                    .append(new KeyedCodec<Boolean>("HostRockCensus", Codec.BOOLEAN),
+                            (cfg, val, info) -> cfg.hostRockCensus = val,
+                            (cfg, info) -> cfg.hostRockCensus)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxPendingPlacements", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.maxPendingPlacements = val,
+                            (cfg, info) -> cfg.maxPendingPlacements)
+                    .add()
+                    .append(new KeyedCodec<Boolean>("GenerationLedger", Codec.BOOLEAN),
+                            (cfg, val, info) -> cfg.generationLedger = val,
+                            (cfg, info) -> cfg.generationLedger)
+                    .add()
+                    .append(new KeyedCodec<Integer>("JobBudgetMillis", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.jobBudgetMillis = val,
+                            (cfg, info) -> cfg.jobBudgetMillis)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxJobsPerWorld", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.maxJobsPerWorld = val,
+                            (cfg, info) -> cfg.maxJobsPerWorld)
+                    .add()
+                    // Append /coalore stats snapshots to metrics.log every N seconds (0 = off)
+                    .append(new KeyedCodec<Integer>("MetricsDumpSeconds", Codec.INTEGER),
+                            (cfg, val, info) -> cfg.metricsDumpSeconds = val,
+                            (cfg, info) -> cfg.metricsDumpSeconds)
+                    .add()
+                    .append(new KeyedCodec<WorldOverride[]>("WorldOverrides", new ArrayCodec<>(WorldOverride.CODEC, WorldOverride[]::new)),
+                            (cfg, val, info) -> cfg.worldOverrides = val,
+                            (cfg, info) -> cfg.worldOverrides)
+                    .add()
+                    .append(new KeyedCodec<ZoneProfile[]>("ZoneProfiles", new ArrayCodec<>(ZoneProfile.CODEC, ZoneProfile[]::new)),
+                            (cfg, val, info) -> cfg.zoneProfiles = val,
+                            (cfg, info) -> cfg.zoneProfiles)
+                    .add()
                     .append(new KeyedCodec<CustomOre[]>("CustomOres", new ArrayCodec<>(CustomOre.CODEC, CustomOre[]::new)),
                             (cfg, val, info) -> cfg.customOres = val,
                             (cfg, info) -> cfg.customOres)
@@ -66,10 +141,23 @@ public class CoalOreConfig {
     private int minY = 10;
     private int maxY = 120;
 
+    // Optional range below the surface; veins are placed by depth, MinY/MaxY still bound them
+    private int minDepth = -1;
+    private int maxDepth = -1;
+
     // Vein configuration
     private int veinsPerChunk = 20;
     private int minVeinSize = 6;
     private int maxVeinSize = 17;
+    // Blob, Ellipsoid, Disc, String, or Walk for the old random walk
+    private String veinShape = "Blob";
+
+    // Spread of coal over its range, null = Power 1.5 (leans deep)
+    private Distribution distribution = null;
+
+    // Veins, or NoiseField for seams from a 3D noise over the Y range (vein settings then unused)
+    private String placementMode = "Veins";
+    private NoiseSettings noiseField = null;
 
     // Chance for a chunk to contain coal (0.0 - 1.0)
     private double spawnChance = 0.85;
@@ -77,6 +165,9 @@ public class CoalOreConfig {
     private String[] allowedZones = new String[0];
     private String[] allowedBiomes = new String[0];
 
+    // ZoneProfiles names for coal, first match wins
+    private String[] profiles = new String[0];
+
     private List<String> coalOreBlocks = List.of(
             "Ore_Coal_Stone",
             "Ore_Coal_Volcanic",
@@ -104,14 +195,49 @@ public class CoalOreConfig {
 
     private CustomOre[] customOres = new CustomOre[0];
 
+    // Per-world settings, matched by world name
+    private WorldOverride[] worldOverrides = new WorldOverride[0];
+
+    // Named per-zone/biome settings, used by the ores that list them
+    private ZoneProfile[] zoneProfiles = new ZoneProfile[0];
+
     // Toggle natural generation on/off
     private boolean enableNaturalGeneration = true;
 
+    // Worker threads used to plan vein layouts ahead of chunk generation
+    private int plannerThreads = 2;
+
+    // Chunks ahead of a moving player to pre-plan (0 = off)
+    private int prePlanDistance = 8;
+
+    // Split the veins of one chunk across threads (output is identical either way)
+    private boolean parallelVeins = false;
+
+    // Sample each chunk's rock first and skip/move veins that can't place; off by default since
+    // the sample can miss rock, so it changes where ore lands and how much of it there is
+    private boolean hostRockCensus = false;
+
+    // Vein cells waiting for a neighbouring chunk to generate (0 = cut veins at chunk borders)
+    private int maxPendingPlacements = 200_000;
+
+    // Record every generated chunk in ledger/ (read at startup)
+    private boolean generationLedger = true;
+
+    // World thread time fill/generate/retrofit jobs may use per tick, shared by a world's jobs (read at startup)
+    private int jobBudgetMillis = 5;
+
+    // Command jobs running at once in one world
+    private int maxJobsPerWorld = 2;
+
+    // Periodic metrics snapshots to the data directory (0 = off)
+    private int metricsDumpSeconds = 0;
+
     // Constants (not configurable)
     public static final int WORLD_MIN_Y = 1;
     public static final int WORLD_MAX_Y = 310;
     public static final int CHUNK_SIZE = 32;
     public static final int CHUNK_SHIFT = 5;
+    public static final int CHUNK_MASK = CHUNK_SIZE - 1;
 
     public CoalOreConfig() {
     }
@@ -125,6 +251,18 @@ public class CoalOreConfig {
         return Math.max(minY + 1, Math.min(WORLD_MAX_Y, maxY));
     }
 
+    public boolean hasDepthRange() {
+        return maxDepth >= 0;
+    }
+
+    public int getMinDepth() {
+        return Math.max(0, Math.min(maxDepth, minDepth));
+    }
+
+    public int getMaxDepth() {
+        return Math.min(WORLD_MAX_Y, maxDepth);
+    }
+
     public int getVeinsPerChunk() {
         return Math.max(1, Math.min(80, veinsPerChunk));
     }
@@ -137,6 +275,22 @@ public class CoalOreConfig {
         return Math.max(minVeinSize, Math.min(100, maxVeinSize));
     }
 
+    public String getVeinShape() {
+        return veinShape;
+    }
+
+    public Distribution getDistribution() {
+        return distribution != null ? distribution : Distribution.power(1.5);
+    }
+
+    public String getPlacementMode() {
+        return placementMode;
+    }
+
+    public NoiseSettings getNoiseField() {
+        return noiseField != null ? noiseField : new NoiseSettings();
+    }
+
     public double getSpawnChance() {
         return Math.max(0.0, Math.min(1.0, spawnChance));
     }
@@ -152,6 +306,54 @@ public class CoalOreConfig {
         return Arrays.asList(customOres);
     }
 
+    public WorldOverride getWorldOverride(String worldName) {
+        if (worldOverrides == null || worldName == null) {
+            return null;
+        }
+        for (WorldOverride override : worldOverrides) {
+            if (override != null && worldName.equalsIgnoreCase(override.getWorld())) {
+                return override;
+            }
+        }
+        return null;
+    }
+
+    public int getPlannerThreads() {
+        return Math.max(0, Math.min(8, plannerThreads));
+    }
+
+    public int getPrePlanDistance() {
+        return Math.max(0, Math.min(32, prePlanDistance));
+    }
+
+    public boolean isParallelVeins() {
+        return parallelVeins;
+    }
+
+    public boolean isHostRockCensus() {
+        return hostRockCensus;
+    }
+
+    public int getMaxPendingPlacements() {
+        return Math.max(0, Math.min(5_000_000, maxPendingPlacements));
+    }
+
+    public boolean isGenerationLedger() {
+        return generationLedger;
+    }
+
+    public int getJobBudgetMillis() {
+        return Math.max(1, Math.min(40, jobBudgetMillis));
+    }
+
+    public int getMaxJobsPerWorld() {
+        return Math.max(1, Math.min(16, maxJobsPerWorld));
+    }
+
+    public int getMetricsDumpSeconds() {
+        return Math.max(0, Math.min(86400, metricsDumpSeconds));
+    }
+
     public boolean isNaturalGenerationEnabled() {
         return enableNaturalGeneration;
     }
@@ -170,6 +372,25 @@ public class CoalOreConfig {
         return Arrays.asList(allowedBiomes);
     }
 
+    public List<String> getProfiles() {
+        if (profiles == null || profiles.length == 0) {
+            return List.of();
+        }
+        return Arrays.asList(profiles);
+    }
+
+    public ZoneProfile getZoneProfile(String name) {
+        if (zoneProfiles == null || name == null) {
+            return null;
+        }
+        for (ZoneProfile profile : zoneProfiles) {
+            if (profile != null && name.equalsIgnoreCase(profile.getName())) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
     public boolean isAllowedInZone(String zoneName) {
         List<String> zones = getAllowedZones();
         if (zones.isEmpty()) return true;  // Empty = all zones allowed
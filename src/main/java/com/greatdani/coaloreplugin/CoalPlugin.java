@@ -22,31 +22,66 @@ import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
 import com.hypixel.hytale.server.core.universe.world.events.ChunkPreLoadProcessEvent;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.server.core.universe.world.worldgen.WorldGenLoadException;
 import com.hypixel.hytale.server.core.util.Config;
-import com.hypixel.hytale.server.worldgen.biome.Biome;
-import com.hypixel.hytale.server.worldgen.chunk.ChunkGenerator;
-import com.hypixel.hytale.server.worldgen.chunk.ZoneBiomeResult;
-import com.hypixel.hytale.server.worldgen.zone.*;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class CoalPlugin extends JavaPlugin {
     private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
 
-    private volatile BlockCache.BlockCaches blockCache;
-    private final AtomicBoolean initializationAttempted = new AtomicBoolean(false);
+    // Active config + resolved ores. Replaced whole on reload, never set back to null
+    private final AtomicReference<GenerationSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<GenerationSnapshot>> initialSnapshot = new AtomicReference<>();
+    private final AtomicInteger snapshotVersions = new AtomicInteger();
 
-    private ChunkGenerator cachedGenerator = null;
-    private int cachedSeed = 0;
-    private boolean generatorInitialized = false;
+    // Most recent snapshots, newest first, for the per-version chunk counts in /coalore reload
+    private static final int RECENT_SNAPSHOTS = 8;
+    private final Deque<GenerationSnapshot> recentSnapshots = new ConcurrentLinkedDeque<>();
+
+    // Generator, seed, zone/biome cache and compiled plan of every world generating chunks
+    private final WorldGenContexts worldContexts = new WorldGenContexts();
+
+    private static final int PLAN_STORE_CAPACITY = 2048;
+    private VeinPlanService planService = null;
+    private MovementPrePlanner prePlanner = null;
+
+    // Vein cells waiting for neighbouring chunks; null when MaxPendingPlacements is 0
+    private static final String PENDING_FILE = "pending-placements.bin";
+    private PendingPlacements pendingPlacements = null;
+
+    // Per-chunk generation records; null when GenerationLedger is off
+    private static final String LEDGER_DIR = "ledger";
+    private GenerationLedger ledger = null;
+
+    // Fill, generate and retrofit work, run a few milliseconds per world tick
+    private JobScheduler jobs = null;
+
+    // Latest /coalore retrofit job by world name, for its progress
+    private static final String RETROFIT_DIR = "retrofit";
+    private final Map<String, RetrofitJob> retrofits = new ConcurrentHashMap<>();
+
+    private static final String METRICS_FILE = "metrics.log";
+    private final GenerationMetrics metrics = GenerationMetrics.GLOBAL;
+    private ScheduledExecutorService metricsDumper = null;
 
     private Config<CoalOreConfig> config = null;
     private boolean hasFilePathLocated = false;
@@ -117,29 +152,60 @@ public class CoalPlugin extends JavaPlugin {
             LOGGER.atInfo().log("Loaded the Default Config");
         }
 
+        // The commands need the scheduler even without a config, so fall back to the defaults then
+        CoalOreConfig jobSettings = cfg != null ? cfg : new CoalOreConfig();
+        jobs = new JobScheduler(jobSettings.getJobBudgetMillis(), jobSettings.getMaxJobsPerWorld());
+
         if(cfg != null) {
             if(!cfg.isNaturalGenerationEnabled() && cfg.getCustomOres().isEmpty()) {
                 LOGGER.atInfo().log("No ore generation enabled");
                 // Don't register any event
-            }else if (cfg.isNaturalGenerationEnabled()) {
-                // Register onChunkCoalGenerated and onChunkCustomOreGenerated.
-                LOGGER.atInfo().log("Coal + Custom ore generation enabled");
-                getEventRegistry().registerGlobal(
-                        EventPriority.LATE,
-                        ChunkPreLoadProcessEvent.class,
-                        this::onChunkCoalGenerated
-                );
             } else {
-                // Register Only Custom Ore No Coal Ore Generation.
-                LOGGER.atInfo().log("Custom ore generation only");
+                // Coal (if enabled) and custom ores share one handler; the plan decides what runs
+                LOGGER.atInfo().log(cfg.isNaturalGenerationEnabled()
+                        ? "Coal + Custom ore generation enabled" : "Custom ore generation only");
                 getEventRegistry().registerGlobal(
                         EventPriority.LATE,
                         ChunkPreLoadProcessEvent.class,
-                        this::onChunkCustomOreGenerated
+                        this::onChunkCoalGenerated
                 );
+                getEventRegistry().registerGlobal(RemoveWorldEvent.class, event -> forgetWorld(event.getWorld()));
+
+                if (cfg.getMaxPendingPlacements() > 0) {
+                    pendingPlacements = new PendingPlacements(cfg.getMaxPendingPlacements(), metrics);
+                    pendingPlacements.load(getDataDirectory().resolve(PENDING_FILE));
+                }
+
+                if (cfg.isGenerationLedger()) {
+                    ledger = new GenerationLedger(getDataDirectory().resolve(LEDGER_DIR));
+                }
+
+                resumeRetrofits();
+
+                if (cfg.getPlannerThreads() > 0) {
+                    planService = new VeinPlanService(cfg.getPlannerThreads(), PLAN_STORE_CAPACITY);
+                    LOGGER.atInfo().log("Planning veins on %d background threads", cfg.getPlannerThreads());
+
+                    if (cfg.getPrePlanDistance() > 0) {
+                        prePlanner = new MovementPrePlanner(planService, snapshot::get, worldContexts::find,
+                                cfg.getPrePlanDistance(), cfg.getPlannerThreads() * 4);
+                        prePlanner.start();
+                    }
+                }
             }
         }
 
+        if (cfg != null && cfg.getMetricsDumpSeconds() > 0) {
+            int period = cfg.getMetricsDumpSeconds();
+            metricsDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "CoalOre-Metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            metricsDumper.scheduleAtFixedRate(this::dumpMetrics, period, period, TimeUnit.SECONDS);
+            LOGGER.atInfo().log("Writing generation metrics to %s every %ds", METRICS_FILE, period);
+        }
+
         getCommandRegistry().registerCommand(new CoalOreCommand());
 
         LOGGER.atInfo().log("Coal Ore plugin setup complete!");
@@ -147,33 +213,37 @@ public class CoalPlugin extends JavaPlugin {
                 cfg.getMinY(), cfg.getMaxY(), cfg.getVeinsPerChunk(), cfg.getSpawnChance());
     }
 
-    private void ensureGeneratorCached(WorldChunk chunk) {
-        if (generatorInitialized) return;
-
-        synchronized (this) {
-            if (generatorInitialized) return;  // Double-check after lock
-
+    @Override
+    protected void shutdown() {
+        if (metricsDumper != null) {
+            metricsDumper.shutdownNow();
+            dumpMetrics();
+        }
+        if (prePlanner != null) {
+            prePlanner.shutdown();
+        }
+        if (planService != null) {
+            LOGGER.atInfo().log("Vein plans: %d scheduled, %.1f%% hit rate, %d evicted",
+                    planService.scheduled.sum(), planService.hitRate() * 100, planService.evicted.sum());
+            planService.shutdown();
+        }
+        VeinPlanner.shutdownParallelPool();
+        // Before the ledger closes; retrofits resume from their checkpoints next start
+        if (jobs != null) {
+            jobs.shutdown();
+        }
+        if (pendingPlacements != null) {
             try {
-                cachedGenerator = (ChunkGenerator) chunk.getWorld()
-                        .getWorldConfig()
-                        .getWorldGenProvider()
-                        .getGenerator();
-
-                cachedSeed = (int) Universe.get().getDefaultWorld().getWorldConfig().getSeed();
-                generatorInitialized = true;
-
-                LOGGER.atInfo().log("Cached ChunkGenerator (seed: %d)", cachedSeed);
-
-                // Log available zones for debugging
-                Zone[] zones = cachedGenerator.getZonePatternGenerator(cachedSeed).getZones();
-                for (Zone zone : zones) {
-                    LOGGER.atInfo().log("  Available zone: %s", zone.name());
-                }
+                Files.createDirectories(getDataDirectory());
+                pendingPlacements.save(getDataDirectory().resolve(PENDING_FILE));
+                LOGGER.atInfo().log("Saved %d pending vein cells", pendingPlacements.size());
             } catch (Exception e) {
-                LOGGER.atSevere().log("Failed to cache generator: %s", e.getMessage());
-                generatorInitialized = true;  // Don't retry on every chunk
+                LOGGER.atWarning().log("Failed to save pending vein cells: %s", e.getMessage());
             }
         }
+        if (ledger != null) {
+            ledger.close();
+        }
     }
 
     private void onChunkCoalGenerated(@Nonnull ChunkPreLoadProcessEvent event) {
@@ -188,161 +258,188 @@ public class CoalPlugin extends JavaPlugin {
             return;
         }
 
-        String zoneName = getZoneAtPosition(chunk);
-        String biomeName = getBiomeAtPosition(chunk);
-
-        BlockCache.BlockCaches cache = getBlockCache();
-        if (cache == null) {
-            LOGGER.atWarning().log("BlockCache is null - initialization failed");
-            return;
-        }
-
-        long chunkSeed = computeChunkSeed(chunk.getX(), chunk.getZ());
-        Random chunkRandom = new Random(chunkSeed);
-        CoalOreConfig cfg = this.config.get();
-
-        // Check zone restriction
-        if (!cfg.isAllowedInZone(zoneName)) {
-            generateCustomOres(event, chunk, cache, zoneName, biomeName, chunkRandom);
-            return;
+        long start = System.nanoTime();
+        GenerationSnapshot snap = getSnapshot();
+        if (!snap.canGenerate()) {
+            return;  // Reported once when the snapshot was built
         }
 
-        // Check biome restriction
-        if (!cfg.isAllowedInBiome(biomeName)) {
-            generateCustomOres(event, chunk, cache, zoneName, biomeName, chunkRandom);
-            return;
+        WorldGenContext world = worldContexts.get(chunk.getWorld());
+        GenerationPlan plan = world.planFor(snap);
+        if (plan == null || plan.isEmpty()) {
+            return;  // Turned off for this world
         }
 
-        if (chunkRandom.nextDouble() > cfg.getSpawnChance()) {
-            generateCustomOres(event, chunk, cache, zoneName, biomeName, chunkRandom);
-            return;
-        }
-
-        int chunkBlockX = chunk.getX() << CoalOreConfig.CHUNK_SHIFT;
-        int chunkBlockZ = chunk.getZ() << CoalOreConfig.CHUNK_SHIFT;
-
-        int numVeins = cfg.getVeinsPerChunk() + chunkRandom.nextInt(2);
-        int totalPlaced = 0;
-        int veinsCreated = 0;
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
 
-        for (int i = 0; i < numVeins; i++) {
-            int x = chunkBlockX + chunkRandom.nextInt(CoalOreConfig.CHUNK_SIZE);
-            int z = chunkBlockZ + chunkRandom.nextInt(CoalOreConfig.CHUNK_SIZE);
-            int y = computeOreY(chunkRandom);
-            int size = cfg.getMinVeinSize() + chunkRandom.nextInt(cfg.getMaxVeinSize() - cfg.getMinVeinSize() + 1);
+        populateChunk(world, plan, chunk, true);
+        metrics.chunkNanos.record(System.nanoTime() - start);
+        snap.chunksGenerated.increment();
+        world.chunksGenerated.increment();
 
-            int placed = generateVein(chunk, cache, x, y, z, size, chunkRandom, null);
-            if (placed > 0) {
-                totalPlaced += placed;
-                veinsCreated++;
-            }
+        // Without a resolver the neighbours' zones would come out wrong, so don't plan ahead
+        if (planService != null && world.resolver != null) {
+            World hostWorld = chunk.getWorld();
+            planService.scheduleNeighbours(world, plan, chunkX, chunkZ,
+                    (x, z) -> isNeighbourGenerated(hostWorld, world.worldName, x, z));
         }
-
-        generateCustomOres(event, chunk, cache, zoneName, biomeName, chunkRandom);
     }
 
-    private void generateCustomOres(ChunkPreLoadProcessEvent event, WorldChunk chunk,
-                                    BlockCache.BlockCaches cache, String zoneName, String biomeName, Random chunkRandom) {
-
-        CoalOreConfig cfg = this.config.get();
-        List<CustomOre> customOreConfigs = cfg.getCustomOres();
+    /**
+     * Runs the ore passes of {@code plan} on one chunk and records it in the ledger;
+     * for an existing chunk what it places is added to the chunk's record.
+     * Only newly generated chunks take part in cross-chunk veins; the neighbours of
+     * a retrofitted chunk won't see another pre-load, so its veins stop at its borders.
+     *
+     * @return number of blocks written
+     */
+    private int populateChunk(WorldGenContext world, GenerationPlan plan, WorldChunk chunk, boolean newlyGenerated) {
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
 
-        if (customOreConfigs == null || customOreConfigs.isEmpty()) {
-            return;
+        ChunkVeinPlan veins = planService != null && newlyGenerated ? planService.take(world, plan, chunkX, chunkZ) : null;
+        if (veins == null) {
+            veins = VeinPlanner.plan(plan, world.resolver, world.seed, chunkX, chunkZ);
         }
 
-        int chunkBlockX = chunk.getX() << CoalOreConfig.CHUNK_SHIFT;
-        int chunkBlockZ = chunk.getZ() << CoalOreConfig.CHUNK_SHIFT;
-
-        for (CustomOre customOre : customOreConfigs) {
-            if (!customOre.isAllowedInZone(zoneName)) {
-                continue;
+        BlockAccess blocks = BlockAccess.ofChunk(chunk);
+        HostRockCensus census = plan.hostRockCensus
+                ? HostRockCensus.take(blocks, chunkX, chunkZ, plan.cache, plan.minY, plan.maxY) : null;
+        PendingPlacements.Batch spill = pendingPlacements != null && plan.crossChunkVeins && newlyGenerated
+                ? PendingPlacements.Batch.acquire() : null;
+        PlacementBuffer buffer = PlacementBuffer.acquire();
+        VeinApplier.apply(blocks, plan.cache, buffer, veins, metrics, census, spill);
+        if (pendingPlacements != null && newlyGenerated) {
+            // The chunk's own veins claimed their cells first
+            pendingPlacements.applyTo(world.storeKey, blocks, chunkX, chunkZ, plan.cache, buffer);
+            if (spill != null && spill.total() > 0) {
+                World hostWorld = chunk.getWorld();
+                pendingPlacements.addAll(world.storeKey, chunkX, chunkZ, spill, plan.cache.oreNames(),
+                        (x, z) -> isNeighbourGenerated(hostWorld, world.worldName, x, z));
             }
+        }
+        int written = buffer.flush(blocks, chunkX, chunkZ, plan.cache, metrics);
+        if (ledger != null && newlyGenerated) {
+            ledger.record(world.worldName, chunkX, chunkZ, plan.fingerprint, buffer.layoutHash(),
+                    written, veins.veinCount, plan.cache.oreNames(), buffer.oreCounts());
+        } else if (ledger != null) {
+            ledger.add(world.worldName, chunkX, chunkZ, plan.fingerprint, buffer.layoutHash(),
+                    written, veins.veinCount, plan.cache.oreNames(), buffer.oreCounts());
+        }
+        return written;
+    }
 
-            if (!customOre.isAllowedInBiome(biomeName)) {
-                continue;
-            }
+    /**
+     * The active snapshot. The first call builds it (other callers wait for that
+     * build instead of seeing nothing); after that this is a single volatile read.
+     */
+    private GenerationSnapshot getSnapshot() {
+        GenerationSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
 
-            if (chunkRandom.nextDouble() > customOre.getSpawnChance()) {
-                continue;
+        CompletableFuture<GenerationSnapshot> initial = initialSnapshot.get();
+        if (initial == null) {
+            CompletableFuture<GenerationSnapshot> mine = new CompletableFuture<>();
+            if (initialSnapshot.compareAndSet(null, mine)) {
+                GenerationSnapshot built;
+                try {
+                    built = buildSnapshot(config.get());
+                } catch (RuntimeException e) {
+                    // Publish an empty snapshot anyway so waiting chunk threads don't hang; /coalore reload retries
+                    LOGGER.atSevere().log("Failed to build generation snapshot: %s", e.getMessage());
+                    built = new GenerationSnapshot(snapshotVersions.incrementAndGet(), config.get(), null, null);
+                }
+                mine.complete(publish(built));
+                return snapshot.get();
             }
+            initial = initialSnapshot.get();
+        }
+        initial.join();
+        return snapshot.get();
+    }
 
-            BlockCache.OreType oreType = cache.getOreByName(customOre.getOreName());
-            if (oreType == null) continue;
-
-            int customVeins = customOre.getVeinsPerChunk() + chunkRandom.nextInt(2);
-
-            for (int i = 0; i < customVeins; i++) {
-                int x = chunkBlockX + chunkRandom.nextInt(CoalOreConfig.CHUNK_SIZE);
-                int z = chunkBlockZ + chunkRandom.nextInt(CoalOreConfig.CHUNK_SIZE);
-                int yRange = customOre.getMaxY() - customOre.getMinY();
-                int y = customOre.getMinY() + chunkRandom.nextInt(Math.max(1, yRange));
-                int size = customOre.getMinVeinSize() + chunkRandom.nextInt(customOre.getMaxVeinSize() - customOre.getMinVeinSize() + 1);
-
-                generateVein(chunk, cache, x, y, z, size, chunkRandom, oreType);
+    // A neighbour that is loaded or in the ledger has generated already and won't fire another pre-load
+    private boolean isNeighbourGenerated(World world, String worldName, int chunkX, int chunkZ) {
+        try {
+            if (world.getChunkIfInMemory(ChunkUtil.indexChunk(chunkX, chunkZ)) != null) {
+                return true;
             }
+        } catch (Exception e) {
+            GenerationMetrics.GLOBAL.recordSwallowed(e);
         }
+        return ledger != null && ledger.lookup(worldName, chunkX, chunkZ) != null;
     }
 
-    private void onChunkCustomOreGenerated(@Nonnull ChunkPreLoadProcessEvent event) {
-
-        if (!event.isNewlyGenerated()) {
-            return;
-        }
+    // Drops everything kept for a removed world; a retrofit checkpoint stays for when it comes back
+    private void forgetWorld(World world) {
+        WorldGenContext context = worldContexts.find(world);
+        worldContexts.remove(world);
+        jobs.forget(world.getName());
+        retrofits.remove(world.getName());
 
-        WorldChunk chunk = event.getChunk();
-        if (chunk == null) {
-            LOGGER.atWarning().log("Chunk was null!");
-            return;
+        long storeKey = context != null ? context.storeKey : WorldGenContext.storeKey(world);
+        if (planService != null) {
+            planService.forget(storeKey);
         }
-
-        String zoneName = getZoneAtPosition(chunk);
-        String biomeName = getBiomeAtPosition(chunk);
-
-
-        BlockCache.BlockCaches cache = getBlockCache();
-        if (cache == null) {
-            LOGGER.atWarning().log("BlockCache is null - initialization failed");
-            return;
+        if (pendingPlacements != null) {
+            pendingPlacements.forget(storeKey);
         }
-
-        long chunkSeed = computeChunkSeed(chunk.getX(), chunk.getZ());
-        Random chunkRandom = new Random(chunkSeed);
-
-        generateCustomOres(event, chunk, cache, zoneName, biomeName, chunkRandom);
     }
 
-    private long computeChunkSeed(int chunkX, int chunkZ) {
-        // Use large primes for better distribution
-        return ((long) chunkX * 341873128712L) + ((long) chunkZ * 132897987541L);
+    private BlockCache.BlockCaches getBlockCache() {
+        return getSnapshot().cache;
     }
 
-    private int computeOreY(Random random) {
-        double factor = Math.pow(random.nextDouble(), 1.5);
-        CoalOreConfig cfg = this.config.get();
+    /**
+     * Makes {@code built} the active snapshot unless a newer one is already active
+     * (two reloads finishing out of order).
+     */
+    private GenerationSnapshot publish(GenerationSnapshot built) {
+        GenerationSnapshot active = snapshot.accumulateAndGet(built,
+                (old, candidate) -> old == null || candidate.version > old.version ? candidate : old);
+
+        if (active == built) {
+            recentSnapshots.addFirst(built);
+            while (recentSnapshots.size() > RECENT_SNAPSHOTS) {
+                recentSnapshots.pollLast();
+            }
+            LOGGER.atInfo().log("Generation snapshot v%d active (%d ore types)",
+                    built.version, built.cache != null ? built.cache.oreCount() : 0);
+            if (built.plan != null && built.plan.hasNoiseFields()) {
+                LOGGER.atInfo().log("Noise field ores run on %s", NoiseField.engine());
+            }
+        }
+        return active;
+    }
 
-        return cfg.getMinY() + (int) (factor * (cfg.getMaxY() - cfg.getMinY()));
+    /**
+     * Reads the config file and builds a new snapshot on a background thread,
+     * then swaps it in. Chunks already being generated finish on the old one.
+     */
+    private CompletableFuture<GenerationSnapshot> reloadSnapshot() {
+        return CompletableFuture.supplyAsync(() -> {
+            config.load().join();
+            return publish(buildSnapshot(config.get()));
+        });
     }
 
-    private BlockCache.BlockCaches getBlockCache() {
-        BlockCache.BlockCaches cache = blockCache;
-        if (cache != null) {
-            return cache;
-        }
+    private GenerationSnapshot buildSnapshot(CoalOreConfig cfg) {
+        int version = snapshotVersions.incrementAndGet();
+        List<BlockCache.OreType> oreTypes = resolveOreTypes(cfg);
 
-        if (!initializationAttempted.compareAndSet(false, true)) {
-            return null;
+        if (oreTypes.isEmpty()) {
+            LOGGER.atWarning().log("No valid ore types found! Natural generation disabled.");
+            return new GenerationSnapshot(version, cfg, null, null);
         }
 
-        return initializeBlockCache();
+        BlockCache.BlockCaches cache = new BlockCache.BlockCaches(oreTypes);
+        return new GenerationSnapshot(version, cfg, cache, GenerationPlan.compile(cfg, cache));
     }
 
-    private synchronized BlockCache.BlockCaches initializeBlockCache() {
-        if (blockCache != null) {
-            return blockCache;
-        }
-
-        CoalOreConfig cfg = this.config.get();
+    private List<BlockCache.OreType> resolveOreTypes(CoalOreConfig cfg) {
         List<String> oreBlockNames = cfg.getCoalOreBlocks();
         List<CustomOre> customOres = cfg.getCustomOres();
 
@@ -407,79 +504,10 @@ public class CoalPlugin extends JavaPlugin {
             LOGGER.atInfo().log("Registered custom ore: %s -> replaces %d stone types", oreName, replaceableIds.size());
         }
 
-
-        if (oreTypes.isEmpty()) {
-            LOGGER.atWarning().log("No valid ore types found! Natural generation disabled.");
-            return null;
-        }
-
-        blockCache = new BlockCache.BlockCaches(oreTypes);
-
-        return blockCache;
+        return oreTypes;
     }
 
 
-    private int generateVein(WorldChunk chunk, BlockCache.BlockCaches cache, int startX, int startY, int startZ,
-                             int size, Random rand,BlockCache.OreType specificOre) {
-        int placed = 0;
-        int chunkX = chunk.getX();
-        int chunkZ = chunk.getZ();
-
-        int x = startX;
-        int y = startY;
-        int z = startZ;
-
-        int maxAttempts = size * 3;
-        int targetBlocks = size;
-
-
-        for (int attempt = 0; attempt < maxAttempts && placed < targetBlocks; attempt++) {
-            // Try to place ore at current position
-            if (y >= CoalOreConfig.WORLD_MIN_Y && y <= CoalOreConfig.WORLD_MAX_Y) {
-                if ((x >> CoalOreConfig.CHUNK_SHIFT) == chunkX && (z >> CoalOreConfig.CHUNK_SHIFT) == chunkZ) {
-                    if (tryPlaceOre(chunk, cache, x, y, z, specificOre)) {
-                        placed++;
-                    }
-                }
-            }
-
-            int direction = rand.nextInt(10);
-            switch (direction) {
-                case 0, 1 -> x++;
-                case 2, 3 -> x--;
-                case 4 -> y++;
-                case 5 -> y--;
-                case 6, 7 -> z++;
-                case 8, 9 -> z--;
-            }
-        }
-
-        return placed;
-    }
-
-    private boolean tryPlaceOre(WorldChunk chunk, BlockCache.BlockCaches cache, int x, int y, int z, BlockCache.OreType specificOre) {
-        try {
-            int currentBlock = chunk.getBlock(x, y, z);
-
-            if (specificOre != null) {
-                if (specificOre.canReplace(currentBlock) && specificOre.isValidAtY(y)) {
-                    chunk.setBlock(x, y, z, specificOre.id, specificOre.type, 0, 0, 4);
-                    return true;
-                }
-            } else {
-                BlockCache.OreType ore = cache.getOreForBlock(currentBlock, y);
-
-                if (ore != null) {
-                    chunk.setBlock(x, y, z, ore.id, ore.type, 0, 0, 4);
-                    return true;
-                }
-            }
-        } catch (Exception e) {
-            // Silently fail
-        }
-        return false;
-    }
-
     // ========== COMMANDS ==========
 
     private class CoalOreCommand extends AbstractCommandCollection {
@@ -491,6 +519,11 @@ public class CoalPlugin extends JavaPlugin {
             addSubCommand(new GenerateCommand());
             addSubCommand(new FillCommand());
             addSubCommand(new ReloadCommand());
+            addSubCommand(new StatsCommand());
+            addSubCommand(new LedgerCommand());
+            addSubCommand(new RetrofitCommand());
+            addSubCommand(new CensusCommand());
+            addSubCommand(new CancelCommand());
         }
     }
 
@@ -520,7 +553,7 @@ public class CoalPlugin extends JavaPlugin {
             int size = clamp(sizeArg.get(context), 1, 20);
 
             world.execute(() -> {
-                int placed = spawnVeinInWorld(world, x, y, z, size);
+                int placed = spawnVeinInWorld(new ChunkHandles(world), x, y, z, size);
                 context.sendMessage(Message.raw(
                         String.format("Spawned coal ore vein with %d blocks at (%d, %d, %d)", placed, x, y, z)));
             });
@@ -559,27 +592,15 @@ public class CoalPlugin extends JavaPlugin {
             context.sendMessage(Message.raw(
                     String.format("Generating %d coal ore veins in radius %d...", count, radius)));
 
-            world.execute(() -> {
-                Random rand = ThreadLocalRandom.current();
-                int totalPlaced = 0;
-                int veinsCreated = 0;
-
-                for (int i = 0; i < count; i++) {
-                    int x = centerX + rand.nextInt(radius * 2) - radius;
-                    int z = centerZ + rand.nextInt(radius * 2) - radius;
-                    int y = 10 + rand.nextInt(50);
-                    int size = 4 + rand.nextInt(9);
-
-                    int placed = spawnVeinInWorld(world, x, y, z, size);
-                    if (placed > 0) {
-                        totalPlaced += placed;
-                        veinsCreated++;
-                    }
-                }
-
-                context.sendMessage(Message.raw(
-                        String.format("Generated %d veins with %d total coal ore blocks!", veinsCreated, totalPlaced)));
-            });
+            Random rand = ThreadLocalRandom.current();
+            int[] veins = new int[count * 4];
+            for (int i = 0; i < count; i++) {
+                veins[i * 4] = centerX + rand.nextInt(radius * 2) - radius;
+                veins[i * 4 + 1] = 10 + rand.nextInt(50);
+                veins[i * 4 + 2] = centerZ + rand.nextInt(radius * 2) - radius;
+                veins[i * 4 + 3] = 4 + rand.nextInt(9);
+            }
+            submitVeins(context, world, "Generate", veins);
         }
     }
 
@@ -610,34 +631,30 @@ public class CoalPlugin extends JavaPlugin {
             context.sendMessage(Message.raw(
                     String.format("Filling area with coal ore (radius %d)...", radius)));
 
-            world.execute(() -> {
-                Random rand = ThreadLocalRandom.current();
-                int totalPlaced = 0;
-                int veinsCreated = 0;
-                int spacing = 8;
-
-                for (int x = centerX - radius; x <= centerX + radius; x += spacing) {
-                    for (int z = centerZ - radius; z <= centerZ + radius; z += spacing) {
-                        for (int yBase = 15; yBase <= 55; yBase += 15) {
-                            int vx = x + rand.nextInt(spacing) - spacing/2;
-                            int vz = z + rand.nextInt(spacing) - spacing/2;
-                            int vy = yBase + rand.nextInt(10) - 5;
-                            int size = 5 + rand.nextInt(6);
-
-                            int placed = spawnVeinInWorld(world, vx, vy, vz, size);
-                            if (placed > 0) {
-                                totalPlaced += placed;
-                                veinsCreated++;
-                            }
-                        }
+            // Positions are rolled now, the veins are placed a few per tick
+            Random rand = ThreadLocalRandom.current();
+            int spacing = 8;
+            List<int[]> veins = new ArrayList<>();
+            for (int x = centerX - radius; x <= centerX + radius; x += spacing) {
+                for (int z = centerZ - radius; z <= centerZ + radius; z += spacing) {
+                    for (int yBase = 15; yBase <= 55; yBase += 15) {
+                        int vx = x + rand.nextInt(spacing) - spacing/2;
+                        int vz = z + rand.nextInt(spacing) - spacing/2;
+                        int vy = yBase + rand.nextInt(10) - 5;
+                        int size = 5 + rand.nextInt(6);
+                        veins.add(new int[]{vx, vy, vz, size});
                     }
                 }
+            }
 
-                context.sendMessage(Message.raw(
-                        String.format("Created %d veins with %d total coal ore blocks!", veinsCreated, totalPlaced)));
-            });
+            int[] packed = new int[veins.size() * 4];
+            for (int i = 0; i < veins.size(); i++) {
+                System.arraycopy(veins.get(i), 0, packed, i * 4, 4);
+            }
+            submitVeins(context, world, "Fill", packed);
         }
     }
+
     private class ReloadCommand extends AbstractPlayerCommand {
         ReloadCommand() {
             super("reload", "Reload the config file");
@@ -648,155 +665,462 @@ public class CoalPlugin extends JavaPlugin {
         protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store,
                                @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
 
-            // Clear cached block data so it reinitializes with new config
-            blockCache = null;
-            initializationAttempted.set(false);
-
-            config.load().join();
+            context.sendMessage(Message.raw("Reloading config..."));
 
-            CoalOreConfig cfg = config.get();
+            // Built and swapped in off the command thread; chunks keep generating meanwhile
+            reloadSnapshot().whenComplete((snap, error) -> {
+                if (error != null) {
+                    LOGGER.atWarning().log("Config reload failed: %s", error.getMessage());
+                    context.sendMessage(Message.raw("Config reload failed, still using the previous config: "
+                            + error.getMessage()));
+                    return;
+                }
 
-            context.sendMessage(Message.raw("Config reloaded!"));
-            context.sendMessage(Message.raw(String.format("  Y range: %d to %d", cfg.getMinY(), cfg.getMaxY())));
-            context.sendMessage(Message.raw(String.format("  Veins/chunk: %d (size %d-%d)",
-                    cfg.getVeinsPerChunk(), cfg.getMinVeinSize(), cfg.getMaxVeinSize())));
-            context.sendMessage(Message.raw(String.format("  Spawn chance: %.0f%%", cfg.getSpawnChance() * 100)));
+                CoalOreConfig cfg = snap.config;
+                context.sendMessage(Message.raw(String.format("Config reloaded! Active snapshot: v%d", snap.version)));
+                context.sendMessage(Message.raw(String.format("  Y range: %d to %d", cfg.getMinY(), cfg.getMaxY())));
+                context.sendMessage(Message.raw(String.format("  Veins/chunk: %d (size %d-%d)",
+                        cfg.getVeinsPerChunk(), cfg.getMinVeinSize(), cfg.getMaxVeinSize())));
+                context.sendMessage(Message.raw(String.format("  Spawn chance: %.0f%%", cfg.getSpawnChance() * 100)));
+                context.sendMessage(Message.raw("  Chunks generated per snapshot:"));
+                for (GenerationSnapshot recent : recentSnapshots) {
+                    context.sendMessage(Message.raw(String.format("    v%d: %d", recent.version, recent.chunksGenerated.sum())));
+                }
+                if (planService != null) {
+                    context.sendMessage(Message.raw(String.format("  Vein plans: %.1f%% hit rate (%d hits, %d inline)",
+                            planService.hitRate() * 100, planService.hits.sum(), planService.misses.sum())));
+                }
+            });
             //context.sendMessage(Message.raw(String.format("  Ore block: %s", cfg.getCoalOreBlock())));
         }
     }
 
-    // ========== HELPER METHODS ==========
+    private class StatsCommand extends AbstractPlayerCommand {
+        @Nonnull
+        private final DefaultArg<String> actionArg = withDefaultArg(
+                "action", "show, reset or dump", ArgTypes.STRING, "show", "Action"
+        );
 
-    private Vector3d getPlayerPosition(Store<EntityStore> store, Ref<EntityStore> ref) {
-        TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
-        return transform != null ? transform.getPosition() : null;
-    }
+        StatsCommand() {
+            super("stats", "Show natural generation metrics");
+            setPermissionGroup(GameMode.Creative);
+        }
 
-    private int spawnVeinInWorld(World world, int centerX, int centerY, int centerZ, int size) {
-        BlockCache.BlockCaches cache = getBlockCache();
-        if (cache == null) {
-            return 0;
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store,
+                               @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            switch (actionArg.get(context).toLowerCase(Locale.ROOT)) {
+                case "reset" -> {
+                    metrics.reset();
+                    context.sendMessage(Message.raw("Generation metrics reset."));
+                }
+                case "dump" -> context.sendMessage(Message.raw(dumpMetrics()
+                        ? "Metrics appended to " + getDataDirectory().resolve(METRICS_FILE)
+                        : "Failed to write metrics, see the server log."));
+                case "show" -> {
+                    context.sendMessage(Message.raw("Coal ore generation:"));
+                    for (String line : metrics.describe()) {
+                        context.sendMessage(Message.raw("  " + line));
+                    }
+                    for (WorldGenContext worldContext : worldContexts.all()) {
+                        context.sendMessage(Message.raw(String.format("  World %s: %d chunks",
+                                worldContext.worldName, worldContext.chunksGenerated.sum())));
+                    }
+                    if (planService != null) {
+                        context.sendMessage(Message.raw(String.format("  Vein plans: %.1f%% hit rate, %d in flight, %d evicted",
+                                planService.hitRate() * 100, planService.inFlight(), planService.evicted.sum())));
+                    }
+                }
+                default -> context.sendMessage(Message.raw("Usage: /coalore stats [show|reset|dump]"));
+            }
         }
+    }
 
-        Random rand = ThreadLocalRandom.current();
-        int placed = 0;
+    private class LedgerCommand extends AbstractPlayerCommand {
+        private static final int LISTED = 10;
 
-        for (int i = 0; i < size; i++) {
-            float progress = (float) i / size;
-            float angle1 = rand.nextFloat() * (float) (Math.PI * 2);
-            float angle2 = rand.nextFloat() * (float) (Math.PI * 2);
+        @Nonnull
+        private final DefaultArg<String> actionArg = withDefaultArg(
+                "action", "older or here", ArgTypes.STRING, "older", "Action"
+        );
 
-            int x = centerX + (int) (Math.cos(angle1) * progress * 2);
-            int y = centerY + (int) (Math.sin(angle1) * Math.cos(angle2) * progress * 2);
-            int z = centerZ + (int) (Math.sin(angle2) * progress * 2);
+        LedgerCommand() {
+            super("ledger", "Find chunks generated under older ore settings");
+            setPermissionGroup(GameMode.Creative);
+        }
 
-            int clusterRadius = 1 + rand.nextInt(2);
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store,
+                               @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            if (ledger == null) {
+                context.sendMessage(Message.raw("The generation ledger is off (GenerationLedger in the config)."));
+                return;
+            }
 
-            for (int dx = -clusterRadius; dx <= clusterRadius; dx++) {
-                for (int dy = -clusterRadius; dy <= clusterRadius; dy++) {
-                    for (int dz = -clusterRadius; dz <= clusterRadius; dz++) {
-                        double dist = Math.sqrt(dx*dx + dy*dy + dz*dz);
-                        if (dist <= clusterRadius + rand.nextFloat() * 0.5) {
-                            int bx = x + dx;
-                            int by = y + dy;
-                            int bz = z + dz;
+            GenerationSnapshot snap = getSnapshot();
+            WorldGenContext worldContext = worldContexts.get(world);
+            GenerationPlan plan = snap.canGenerate() ? worldContext.planFor(snap) : null;
+            if (plan == null) {
+                context.sendMessage(Message.raw("Ore generation is off for this world."));
+                return;
+            }
 
-                            if (by >= CoalOreConfig.WORLD_MIN_Y && by <= CoalOreConfig.WORLD_MAX_Y) {
-                                if (placeOreInWorld(world, cache, bx, by, bz)) {
-                                    placed++;
-                                }
-                            }
+            switch (actionArg.get(context).toLowerCase(Locale.ROOT)) {
+                case "here" -> {
+                    Vector3d pos = getPlayerPosition(store, ref);
+                    if (pos == null) {
+                        context.sendMessage(Message.raw("Could not get player position!"));
+                        return;
+                    }
+                    int chunkX = (int) Math.floor(pos.x) >> CoalOreConfig.CHUNK_SHIFT;
+                    int chunkZ = (int) Math.floor(pos.z) >> CoalOreConfig.CHUNK_SHIFT;
+                    GenerationLedger.Entry entry = ledger.lookup(worldContext.worldName, chunkX, chunkZ);
+                    if (entry == null) {
+                        context.sendMessage(Message.raw(String.format("Chunk %d, %d has no ledger record.", chunkX, chunkZ)));
+                        return;
+                    }
+                    context.sendMessage(Message.raw(String.format(
+                            "Chunk %d, %d: %d blocks of %d ores from %d veins, %s settings (layout %016x)",
+                            chunkX, chunkZ, entry.blocks(), entry.oreKinds(), entry.veins(),
+                            entry.fingerprint() == plan.fingerprint ? "current" : "older", entry.layoutHash())));
+                    StringBuilder ores = new StringBuilder();
+                    for (String oreName : plan.cache.oreNames()) {
+                        int blocks = entry.blocksOf(oreName);
+                        if (blocks > 0) {
+                            ores.append(ores.isEmpty() ? "  " : ", ").append(oreName).append(' ').append(blocks);
                         }
                     }
+                    if (!ores.isEmpty()) {
+                        context.sendMessage(Message.raw(ores.toString()));
+                    }
+                }
+                case "older" -> {
+                    context.sendMessage(Message.raw("Scanning the ledger..."));
+                    // Reads every region file of the world, so keep it off the world thread
+                    CompletableFuture.runAsync(() -> {
+                        List<GenerationLedger.Entry> listed = new ArrayList<>();
+                        long[] older = new long[1];
+                        long recorded;
+                        try {
+                            recorded = ledger.forEachOlder(worldContext.worldName, plan.fingerprint, entry -> {
+                                if (older[0]++ < LISTED) {
+                                    listed.add(entry);
+                                }
+                            });
+                        } catch (IOException e) {
+                            context.sendMessage(Message.raw("Failed to read the ledger: " + e.getMessage()));
+                            return;
+                        }
+
+                        context.sendMessage(Message.raw(String.format(
+                                "World %s: %d chunks recorded, %d generated under older settings",
+                                worldContext.worldName, recorded, older[0])));
+                        for (GenerationLedger.Entry entry : listed) {
+                            context.sendMessage(Message.raw(String.format("  chunk %d, %d: %d blocks",
+                                    entry.chunkX(), entry.chunkZ(), entry.blocks())));
+                        }
+                        if (older[0] > LISTED) {
+                            context.sendMessage(Message.raw(String.format("  ... and %d more", older[0] - LISTED)));
+                        }
+                    });
                 }
+                default -> context.sendMessage(Message.raw("Usage: /coalore ledger [older|here]"));
             }
         }
-
-        return placed;
     }
 
-    private boolean placeOreInWorld(World world, BlockCache.BlockCaches cache, int x, int y, int z) {
-        try {
-            long chunkIndex = ChunkUtil.indexChunkFromBlock(x, z);
-            WorldChunk chunk = (WorldChunk) world.getNonTickingChunk(chunkIndex);
-
-            if (chunk != null) {
-                int currentBlock = chunk.getBlock(x, y, z);
+    private class RetrofitCommand extends AbstractPlayerCommand {
+        @Nonnull
+        private final DefaultArg<String> actionArg = withDefaultArg(
+                "action", "start, progress or cancel", ArgTypes.STRING, "progress", "Action"
+        );
 
-                // Find matching ore for this stone type
-                BlockCache.OreType ore = cache.getOreForBlock(currentBlock, y);
+        RetrofitCommand() {
+            super("retrofit", "Add ores to chunks generated before the current settings");
+            setPermissionGroup(GameMode.Creative);
+        }
 
-                if (ore != null) {
-                    chunk.setBlock(x, y, z, ore.id, ore.type, 0, 0, 4);
-                    return true;
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store,
+                               @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            RetrofitJob job = retrofits.get(world.getName());
+            switch (actionArg.get(context).toLowerCase(Locale.ROOT)) {
+                case "start" -> {
+                    try {
+                        RetrofitJob started = startRetrofit(world, message -> context.sendMessage(Message.raw(message)));
+                        if (started == null) {
+                            context.sendMessage(Message.raw("A retrofit is already running here, see /coalore retrofit progress."));
+                            return;
+                        }
+                        context.sendMessage(Message.raw(String.format("Retrofit #%d of %s: %d chunks in region order, starting at %.1f%%",
+                                started.id, started.worldName, started.totalChunks(), started.fraction() * 100)));
+                    } catch (Exception e) {
+                        context.sendMessage(Message.raw("Could not start the retrofit: " + e.getMessage()));
+                    }
+                }
+                case "progress" -> {
+                    if (job == null) {
+                        context.sendMessage(Message.raw("No retrofit has run in this world since the server started."));
+                        return;
+                    }
+                    long eta = job.etaSeconds();
+                    context.sendMessage(Message.raw(String.format("Retrofit #%d of %s: %s, %.1f%% (%d retrofitted, %d skipped, %d blocks)",
+                            job.id, job.worldName, job.state().name().toLowerCase(Locale.ROOT), job.fraction() * 100,
+                            job.retrofitted(), job.skipped(), job.blocks())));
+                    if (job.state() == RetrofitJob.State.RUNNING) {
+                        context.sendMessage(Message.raw(eta < 0 ? "  ETA: not known yet"
+                                : String.format("  ETA: %dh %02dm %02ds", eta / 3600, eta / 60 % 60, eta % 60)));
+                    } else if (job.failure() != null) {
+                        context.sendMessage(Message.raw("  Stopped: " + job.failure()));
+                    }
+                }
+                case "cancel" -> {
+                    if (job == null || job.state() != RetrofitJob.State.RUNNING) {
+                        context.sendMessage(Message.raw("No retrofit is running in this world."));
+                        return;
+                    }
+                    job.cancel();
+                    context.sendMessage(Message.raw(String.format("Retrofit cancelled after %d chunks; the next start begins from scratch.",
+                            job.processed())));
                 }
+                default -> context.sendMessage(Message.raw("Usage: /coalore retrofit [start|progress|cancel]"));
             }
-        } catch (Exception e) {
-            // Silently fail
         }
-        return false;
     }
 
-    private static int clamp(int value, int min, int max) {
-        return Math.max(min, Math.min(max, value));
+    private class CensusCommand extends AbstractPlayerCommand {
+        @Nonnull
+        private final DefaultArg<Integer> radiusArg = withDefaultArg(
+                "radius", "Radius to count in", ArgTypes.INTEGER, 64, "Census radius"
+        );
+
+        CensusCommand() {
+            super("census", "Count the ore in loaded chunks around you against what the settings should place");
+            setPermissionGroup(GameMode.Creative);
+        }
+
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store,
+                               @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            GenerationSnapshot snap = getSnapshot();
+            WorldGenContext worldContext = worldContexts.get(world);
+            GenerationPlan plan = snap.canGenerate() ? worldContext.planFor(snap) : null;
+            if (plan == null) {
+                context.sendMessage(Message.raw("Ore generation is off for this world."));
+                return;
+            }
+
+            Vector3d pos = getPlayerPosition(store, ref);
+            if (pos == null) {
+                context.sendMessage(Message.raw("Could not get player position!"));
+                return;
+            }
+
+            int radius = clamp(radiusArg.get(context), 1, 512);
+            int chunkX = (int) Math.floor(pos.x) >> CoalOreConfig.CHUNK_SHIFT;
+            int chunkZ = (int) Math.floor(pos.z) >> CoalOreConfig.CHUNK_SHIFT;
+            CensusJob job = new CensusJob(world, worldContext.worldName, plan, worldContext.resolver, worldContext.seed,
+                    chunkX, chunkZ, (radius + CoalOreConfig.CHUNK_MASK) >> CoalOreConfig.CHUNK_SHIFT,
+                    message -> context.sendMessage(Message.raw(message)));
+            if (!jobs.submit(job)) {
+                context.sendMessage(Message.raw("This world is already running as many ore jobs as allowed; wait or /coalore cancel."));
+                return;
+            }
+            context.sendMessage(Message.raw(String.format("Census #%d: %d chunks within %d blocks, counted as found/expected (/coalore cancel %d to stop)",
+                    job.id, job.totalChunks(), radius, job.id)));
+        }
     }
 
-    private void initializeGenerator(WorldChunk chunk) {
-        if (generatorInitialized) return;
+    private class CancelCommand extends AbstractPlayerCommand {
+        @Nonnull
+        private final DefaultArg<Integer> idArg = withDefaultArg(
+                "id", "Job to cancel (0 = every job in this world)", ArgTypes.INTEGER, 0, "Job id"
+        );
 
-        try {
-            cachedGenerator = (ChunkGenerator) chunk.getWorld()
-                    .getWorldConfig()
-                    .getWorldGenProvider()
-                    .getGenerator();
+        CancelCommand() {
+            super("cancel", "Cancel running generate, fill, retrofit or census jobs");
+            setPermissionGroup(GameMode.Creative);
+        }
 
-            cachedSeed = (int) Universe.get().getDefaultWorld().getWorldConfig().getSeed();
-            generatorInitialized = true;
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store,
+                               @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            int id = idArg.get(context);
+            List<JobScheduler.Job> targets;
+            if (id > 0) {
+                JobScheduler.Job job = jobs.find(id);
+                targets = job != null ? List.of(job) : List.of();
+            } else {
+                targets = jobs.running(world.getName());
+            }
 
-            LOGGER.atInfo().log("Cached ChunkGenerator and seed: %d", cachedSeed);
-        } catch (Exception e) {
-            LOGGER.atWarning().log("Failed to initialize generator: %s", e.getMessage());
+            if (targets.isEmpty()) {
+                context.sendMessage(Message.raw(id > 0 ? "No running job #" + id + "." : "No jobs are running in this world."));
+                return;
+            }
+            for (JobScheduler.Job job : targets) {
+                job.cancel();
+            }
+            context.sendMessage(Message.raw(String.format("Cancelled %d job(s).", targets.size())));
         }
     }
 
-    private String getZoneAtPosition(WorldChunk chunk) {
+    // ========== JOBS ==========
 
-        initializeGenerator(chunk);
+    private void submitVeins(CommandContext context, World world, String kind, int[] veins) {
+        VeinsJob job = new VeinsJob(kind, world, veins, message -> context.sendMessage(Message.raw(message)));
+        if (!jobs.submit(job)) {
+            context.sendMessage(Message.raw("This world is already running as many ore jobs as allowed; wait or /coalore cancel."));
+            return;
+        }
+        context.sendMessage(Message.raw(String.format("%s #%d: %d veins queued (/coalore cancel %d to stop)",
+                kind, job.id, veins.length / 4, job.id)));
+    }
 
-        if (cachedGenerator == null) {
-            return "unknown";
+    // Veins from generate/fill, one per unit; quads of x, y, z, size
+    private class VeinsJob extends JobScheduler.Job {
+        private final int[] veins;
+        private final ChunkHandles chunks;
+        private int next;
+        private int created;
+        private int placed;
+
+        VeinsJob(String kind, World world, int[] veins, Consumer<String> reporter) {
+            super(kind, world, world.getName(), reporter);
+            this.veins = veins;
+            this.chunks = new ChunkHandles(world);
         }
 
-        try {
-            int centerX = chunk.getX() * 32 + 16;
-            int centerZ = chunk.getZ() * 32 + 16;
+        @Override
+        void beginSlice() {
+            chunks.clear();
+        }
 
-            ZoneBiomeResult result = cachedGenerator.getZoneBiomeResultAt(cachedSeed, centerX, centerZ);
-            Zone zone = result.getZoneResult().getZone();
+        @Override
+        Step step() {
+            if (next >= veins.length) {
+                return Step.DONE;
+            }
+            int blocks = spawnVeinInWorld(chunks, veins[next], veins[next + 1], veins[next + 2], veins[next + 3]);
+            if (blocks > 0) {
+                placed += blocks;
+                created++;
+            }
+            next += 4;
+            return Step.MORE;
+        }
 
-            return zone.name();
-        } catch (Exception e) {
-            return "unknown";
+        @Override
+        String progress() {
+            return String.format("%d/%d veins, %d created with %d coal ore blocks", next / 4, veins.length / 4, created, placed);
         }
     }
 
-    private String getBiomeAtPosition(WorldChunk chunk) {
-        initializeGenerator(chunk);
+    private Path retrofitCheckpoint(String worldName) {
+        return getDataDirectory().resolve(RETROFIT_DIR)
+                .resolve(worldName.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin");
+    }
 
-        if (cachedGenerator == null) {
-            return "unknown";
+    /**
+     * Starts (or resumes from its checkpoint) the retrofit of {@code world}.
+     *
+     * @return the running job, or null if one was already running
+     * @throws IllegalStateException if the world runs as many jobs as allowed
+     */
+    private RetrofitJob startRetrofit(World world, Consumer<String> reporter) throws IOException {
+        String worldName = world.getName();
+        RetrofitJob running = retrofits.get(worldName);
+        if (running != null && running.state() == RetrofitJob.State.RUNNING) {
+            return null;
         }
 
-        try {
-            int centerX = chunk.getX() * 32 + 16;
-            int centerZ = chunk.getZ() * 32 + 16;
+        RetrofitJob job = RetrofitJob.create(world, worldName, world.getSavePath().resolve("chunks"),
+                retrofitCheckpoint(worldName),
+                () -> {
+                    GenerationSnapshot snap = getSnapshot();
+                    return snap.canGenerate() ? worldContexts.get(world).planFor(snap) : null;
+                },
+                (plan, chunk) -> populateChunk(worldContexts.get(world), plan, chunk, false),
+                ledger, reporter);
+        if (!jobs.submit(job)) {
+            throw new IllegalStateException("this world is already running as many ore jobs as allowed");
+        }
+        retrofits.put(worldName, job);
+        return job;
+    }
+
+    // Worlds load after setup, so checkpoints left by the last run are picked up once their world shows up
+    private void resumeRetrofits() {
+        Path dir = getDataDirectory().resolve(RETROFIT_DIR);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        Set<String> waiting = ConcurrentHashMap.newKeySet();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.bin")) {
+            for (Path file : files) {
+                String worldName = RetrofitJob.checkpointWorld(file);
+                if (worldName != null) {
+                    waiting.add(worldName);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Failed to list retrofit checkpoints: %s", e.getMessage());
+            return;
+        }
+        if (waiting.isEmpty()) {
+            return;
+        }
+
+        LOGGER.atInfo().log("Retrofit will resume for: %s", String.join(", ", waiting));
+        ScheduledFuture<?>[] check = new ScheduledFuture<?>[1];
+        check[0] = jobs.every(5, () -> {
+            for (String worldName : waiting) {
+                World world = Universe.get() != null ? Universe.get().getWorld(worldName) : null;
+                if (world == null) continue;
+                try {
+                    startRetrofit(world, null);
+                } catch (IllegalStateException e) {
+                    continue;  // Other jobs running there; try again later
+                } catch (Exception e) {
+                    LOGGER.atWarning().log("Failed to resume retrofit of %s: %s", worldName, e.getMessage());
+                }
+                waiting.remove(worldName);
+            }
+            if (waiting.isEmpty()) {
+                check[0].cancel(false);
+            }
+        });
+    }
 
-            ZoneBiomeResult result = cachedGenerator.getZoneBiomeResultAt(cachedSeed, centerX, centerZ);
-            Biome biome = result.getBiome();
+    // ========== HELPER METHODS ==========
 
-            return biome.getName();
+    private boolean dumpMetrics() {
+        try {
+            Files.createDirectories(getDataDirectory());
+            metrics.dump(getDataDirectory().resolve(METRICS_FILE));
+            return true;
         } catch (Exception e) {
-            return "unknown";
+            LOGGER.atWarning().log("Failed to write metrics: %s", e.getMessage());
+            return false;
         }
     }
+
+    private Vector3d getPlayerPosition(Store<EntityStore> store, Ref<EntityStore> ref) {
+        TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+        return transform != null ? transform.getPosition() : null;
+    }
+
+    private int spawnVeinInWorld(ChunkHandles chunks, int centerX, int centerY, int centerZ, int size) {
+        BlockCache.BlockCaches cache = getBlockCache();
+        if (cache == null) {
+            return 0;
+        }
+
+        return WorldVeins.spawnVeinInWorld(chunks, cache, centerX, centerY, centerZ, size, ThreadLocalRandom.current());
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
 }
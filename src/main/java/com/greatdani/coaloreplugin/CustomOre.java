@@ -26,6 +26,14 @@ public class CustomOre {
                             (ore, val, info) -> ore.maxY = val,
                             (ore, info) -> ore.maxY)
                     .add()
+                    .append(new KeyedCodec<Integer>("MinDepth", Codec.INTEGER),
+                            (ore, val, info) -> ore.minDepth = val,
+                            (ore, info) -> ore.minDepth)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxDepth", Codec.INTEGER),
+                            (ore, val, info) -> ore.maxDepth = val,
+                            (ore, info) -> ore.maxDepth)
+                    .add()
                     .append(new KeyedCodec<Integer>("VeinsPerChunk", Codec.INTEGER),
                             (ore, val, info) -> ore.veinsPerChunk = val,
                             (ore, info) -> ore.veinsPerChunk)
@@ -42,6 +50,22 @@ public class CustomOre {
                             (ore, val, info) -> ore.maxVeinSize = val,
                             (ore, info) -> ore.maxVeinSize)
                     .add()
+                    .append(new KeyedCodec<String>("VeinShape", Codec.STRING),
+                            (ore, val, info) -> ore.veinShape = val,
+                            (ore, info) -> ore.veinShape)
+                    .add()
+                    .append(new KeyedCodec<Distribution>("Distribution", Distribution.CODEC),
+                            (ore, val, info) -> ore.distribution = val,
+                            (ore, info) -> ore.distribution)
+                    .add()
+                    .append(new KeyedCodec<String>("PlacementMode", Codec.STRING),
+                            (ore, val, info) -> ore.placementMode = val,
+                            (ore, info) -> ore.placementMode)
+                    .add()
+                    .append(new KeyedCodec<NoiseSettings>("NoiseField", NoiseSettings.CODEC),
+                            (ore, val, info) -> ore.noiseField = val,
+                            (ore, info) -> ore.noiseField)
+                    .add()
                     .append(new KeyedCodec<String[]>("AllowedZones", Codec.STRING_ARRAY),
                             (ore, val, info) -> ore.allowedZones = val,
                             (ore, info) -> ore.allowedZones)
@@ -50,6 +74,10 @@ public class CustomOre {
                             (ore, val, info) -> ore.allowedBiomes = val,
                             (ore, info) -> ore.allowedBiomes)
                     .add()
+                    .append(new KeyedCodec<String[]>("Profiles", Codec.STRING_ARRAY),
+                            (ore, val, info) -> ore.profiles = val,
+                            (ore, info) -> ore.profiles)
+                    .add()
                     .build();
 
     private String oreName = "";
@@ -58,13 +86,28 @@ public class CustomOre {
     private String[] allowedZones = new String[0];
     private String[] allowedBiomes = new String[0];
 
+    // ZoneProfiles names, first match wins
+    private String[] profiles = new String[0];
+
     private int minY = 10;
     private int maxY = 120;
 
+    // Depth below the surface, -1 = use MinY/MaxY only
+    private int minDepth = -1;
+    private int maxDepth = -1;
+
     private int veinsPerChunk = 5;
     private double spawnChance = 0.5;
     private int minVeinSize = 3;
     private int maxVeinSize = 8;
+    private String veinShape = "Blob";
+
+    // Spread over the Y/depth range, null = Uniform
+    private Distribution distribution = null;
+
+    // Veins or NoiseField, see CoalOreConfig
+    private String placementMode = "Veins";
+    private NoiseSettings noiseField = null;
 
     public CustomOre() {
     }
@@ -95,6 +138,18 @@ public class CustomOre {
         return y >= getMinY() && y <= getMaxY();
     }
 
+    public boolean hasDepthRange() {
+        return maxDepth >= 0;
+    }
+
+    public int getMinDepth() {
+        return Math.max(0, Math.min(maxDepth, minDepth));
+    }
+
+    public int getMaxDepth() {
+        return Math.min(310, maxDepth);
+    }
+
     public int getVeinsPerChunk() {
         return Math.max(1, veinsPerChunk);
     }
@@ -111,6 +166,22 @@ public class CustomOre {
         return Math.max(minVeinSize, maxVeinSize);
     }
 
+    public String getVeinShape() {
+        return veinShape;
+    }
+
+    public Distribution getDistribution() {
+        return distribution != null ? distribution : Distribution.uniform();
+    }
+
+    public String getPlacementMode() {
+        return placementMode;
+    }
+
+    public NoiseSettings getNoiseField() {
+        return noiseField != null ? noiseField : new NoiseSettings();
+    }
+
     public List<String> getAllowedZones() {
         if (allowedZones == null || allowedZones.length == 0) {
             return List.of();
@@ -125,6 +196,13 @@ public class CustomOre {
         return Arrays.asList(allowedBiomes);
     }
 
+    public List<String> getProfiles() {
+        if (profiles == null || profiles.length == 0) {
+            return List.of();
+        }
+        return Arrays.asList(profiles);
+    }
+
     public boolean isAllowedInZone(String zoneName) {
         List<String> zones = getAllowedZones();
         if (zones.isEmpty()) return true;  // Empty = all zones allowed
@@ -0,0 +1,92 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.codec.Codec;
+import com.hypixel.hytale.codec.KeyedCodec;
+import com.hypixel.hytale.codec.builder.BuilderCodec;
+import com.hypixel.hytale.codec.codecs.array.ArrayCodec;
+
+/**
+ * How an ore's veins spread over its Y (or depth) range. Compiled into an
+ * {@link InverseCdf} table when the plan is built.
+ * <p>
+ * Types: Uniform, Power (Exponent > 1 leans deep), Triangular (Peak),
+ * GaussianPeak (Peak, Spread in blocks), Piecewise (Weights per equal band, deepest band first).
+ */
+public class Distribution {
+    public static final BuilderCodec<Distribution> CODEC =
+            BuilderCodec.builder(Distribution.class, Distribution::new)
+                    .append(new KeyedCodec<String>("Type", Codec.STRING),
+                            (d, val, info) -> d.type = val,
+                            (d, info) -> d.type)
+                    .add()
+                    .append(new KeyedCodec<Double>("Exponent", Codec.DOUBLE),
+                            (d, val, info) -> d.exponent = val,
+                            (d, info) -> d.exponent)
+                    .add()
+                    .append(new KeyedCodec<Integer>("Peak", Codec.INTEGER),
+                            (d, val, info) -> d.peak = val,
+                            (d, info) -> d.peak)
+                    .add()
+                    .append(new KeyedCodec<Double>("Spread", Codec.DOUBLE),
+                            (d, val, info) -> d.spread = val,
+                            (d, info) -> d.spread)
+                    .add()
+                    .append(new KeyedCodec<Double[]>("Weights", new ArrayCodec<>(Codec.DOUBLE, Double[]::new)),
+                            (d, val, info) -> d.weights = val,
+                            (d, info) -> d.weights)
+                    .add()
+                    .build();
+
+    private String type = "Uniform";
+
+    // Power
+    private double exponent = 1.5;
+
+    // Triangular and GaussianPeak: Y, or depth for ores placed by depth
+    private int peak = 40;
+    private double spread = 16;
+
+    // Piecewise
+    private Double[] weights = new Double[0];
+
+    public Distribution() {
+    }
+
+    static Distribution uniform() {
+        return new Distribution();
+    }
+
+    static Distribution power(double exponent) {
+        Distribution d = new Distribution();
+        d.type = "Power";
+        d.exponent = exponent;
+        return d;
+    }
+
+    public String getType() {
+        return type == null ? "Uniform" : type;
+    }
+
+    public double getExponent() {
+        return Math.max(0.05, Math.min(20, exponent));
+    }
+
+    public int getPeak() {
+        return peak;
+    }
+
+    public double getSpread() {
+        return Math.max(0.5, spread);
+    }
+
+    public double[] getWeights() {
+        if (weights == null) {
+            return new double[0];
+        }
+        double[] out = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            out[i] = weights[i] != null ? Math.max(0, weights[i]) : 0;
+        }
+        return out;
+    }
+}
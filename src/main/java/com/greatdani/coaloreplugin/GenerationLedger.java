@@ -0,0 +1,338 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One small record per generated chunk: the plan fingerprint it was generated
+ * with, what got placed (in total and per ore) and a hash of the layout. Records live in memory-mapped
+ * files of 32x32 chunks under {@code ledger/<world>/}, so a lookup or update is
+ * an offset into a mapped page and nothing grows on the heap per chunk. Writes
+ * reach the OS on every update, so they survive a server crash.
+ * <p>
+ * The plan fingerprint stands in for the snapshot version, which restarts at 1
+ * every boot; the fingerprint stays the same as long as the settings do. Ores
+ * are kept by a hash of their name, which survives config changes that
+ * renumber them.
+ */
+final class GenerationLedger {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    static final int REGION_SHIFT = 5;
+    static final int REGION_CHUNKS = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_CHUNKS - 1;
+
+    // status, generatedAt, fingerprint, layoutHash, blocks, veins, oreKinds, then per ore (name hash, blocks)
+    private static final int SUMMARY_BYTES = 32;
+    static final int RECORDED_ORES = 8;
+    static final int RECORD_BYTES = SUMMARY_BYTES + RECORDED_ORES * 8;
+    private static final int HEADER_BYTES = 16;
+    private static final int REGION_BYTES = HEADER_BYTES + REGION_CHUNKS * REGION_CHUNKS * RECORD_BYTES;
+
+    private static final int MAGIC = 0x434C4447;  // "CLDG"
+    private static final int VERSION = 2;
+    // Version 1 had the summary only
+    private static final int VERSION_SUMMARY_ONLY = 1;
+    private static final int GENERATED = 1;
+
+    // Mapped regions kept open per world; past this, some are dropped and remapped on demand
+    private static final int MAX_OPEN_REGIONS = 256;
+
+    private final Path root;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Long, MappedByteBuffer>> worlds = new ConcurrentHashMap<>();
+    // Regions found to have no file, so lookups there don't hit the file system again until one is recorded
+    private final ConcurrentHashMap<String, Set<Long>> missing = new ConcurrentHashMap<>();
+
+    GenerationLedger(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Records that a chunk was just generated. Failures are counted and otherwise ignored.
+     *
+     * @param oreBlocks blocks written per ore, indexed like {@code oreNames}; the
+     *                  first {@link #RECORDED_ORES} ores that got any are kept by name
+     */
+    void record(String world, int chunkX, int chunkZ, long fingerprint, long layoutHash,
+                int blocks, int veins, String[] oreNames, int[] oreBlocks) {
+        MappedByteBuffer region = region(world, chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT, true);
+        if (region == null) {
+            return;
+        }
+
+        int at = offset(chunkX, chunkZ);
+        region.putInt(at, 0);
+        region.putInt(at + 4, (int) (System.currentTimeMillis() / 1000));
+        region.putLong(at + 8, fingerprint);
+        region.putLong(at + 16, layoutHash);
+        region.putInt(at + 24, blocks);
+        region.putShort(at + 28, (short) Math.min(0xFFFF, veins));
+
+        int oreKinds = 0;
+        for (int ore = 0; ore < oreNames.length; ore++) {
+            if (oreBlocks[ore] <= 0) continue;
+            if (oreKinds < RECORDED_ORES) {
+                int slot = at + SUMMARY_BYTES + oreKinds * 8;
+                region.putInt(slot, oreNames[ore].hashCode());
+                region.putInt(slot + 4, oreBlocks[ore]);
+            }
+            oreKinds++;
+        }
+        for (int i = oreKinds; i < RECORDED_ORES; i++) {
+            region.putLong(at + SUMMARY_BYTES + i * 8, 0L);
+        }
+        region.putShort(at + 30, (short) Math.min(0xFFFF, oreKinds));
+        // Written last so a half-written record reads as missing
+        region.putInt(at, GENERATED);
+    }
+
+    /**
+     * Like {@link #record}, for ores added to a chunk that may already have a
+     * record: the counts are added to it. Ores no longer in {@code oreNames} drop out.
+     */
+    void add(String world, int chunkX, int chunkZ, long fingerprint, long layoutHash,
+             int blocks, int veins, String[] oreNames, int[] oreBlocks) {
+        Entry previous = lookup(world, chunkX, chunkZ);
+        if (previous == null) {
+            record(world, chunkX, chunkZ, fingerprint, layoutHash, blocks, veins, oreNames, oreBlocks);
+            return;
+        }
+
+        int[] merged = Arrays.copyOf(oreBlocks, oreNames.length);
+        for (int ore = 0; ore < oreNames.length; ore++) {
+            merged[ore] += Math.max(0, previous.blocksOf(oreNames[ore]));
+        }
+        record(world, chunkX, chunkZ, fingerprint,
+                layoutHash == 0 ? previous.layoutHash : OreSeeds.mix64(previous.layoutHash ^ layoutHash),
+                previous.blocks + blocks, previous.veins + veins, oreNames, merged);
+    }
+
+    /**
+     * The chunk's record, or null if it was never recorded.
+     */
+    Entry lookup(String world, int chunkX, int chunkZ) {
+        MappedByteBuffer region = region(world, chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT, false);
+        return region != null ? read(region, chunkX, chunkZ) : null;
+    }
+
+    /**
+     * Whether the chunk was generated with a plan whose fingerprint is {@code fingerprint}.
+     */
+    boolean isCurrent(String world, int chunkX, int chunkZ, long fingerprint) {
+        Entry entry = lookup(world, chunkX, chunkZ);
+        return entry != null && entry.fingerprint == fingerprint;
+    }
+
+    /**
+     * Calls {@code visitor} for every recorded chunk of {@code world} generated with a
+     * different fingerprint. Goes through every region file, so run it off the world thread.
+     *
+     * @return number of chunks recorded in total
+     */
+    long forEachOlder(String world, long fingerprint, Visitor visitor) throws IOException {
+        Path dir = worldDir(world);
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+
+        long recorded = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "r.*.*.dat")) {
+            for (Path file : files) {
+                String[] parts = file.getFileName().toString().split("\\.");
+                int regionX;
+                int regionZ;
+                try {
+                    regionX = Integer.parseInt(parts[1]);
+                    regionZ = Integer.parseInt(parts[2]);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    continue;
+                }
+
+                MappedByteBuffer region = region(world, regionX, regionZ, false);
+                if (region == null) continue;
+
+                for (int i = 0; i < REGION_CHUNKS * REGION_CHUNKS; i++) {
+                    int chunkX = (regionX << REGION_SHIFT) | (i & REGION_MASK);
+                    int chunkZ = (regionZ << REGION_SHIFT) | (i >> REGION_SHIFT);
+                    int at = offset(chunkX, chunkZ);
+                    if (region.getInt(at) != GENERATED) continue;
+
+                    recorded++;
+                    if (region.getLong(at + 8) != fingerprint) {
+                        visitor.visit(read(region, chunkX, chunkZ));
+                    }
+                }
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Pushes every open region to disk and forgets it.
+     */
+    void close() {
+        for (ConcurrentHashMap<Long, MappedByteBuffer> regions : worlds.values()) {
+            for (MappedByteBuffer region : regions.values()) {
+                try {
+                    region.force();
+                } catch (Exception e) {
+                    GenerationMetrics.GLOBAL.recordSwallowed(e);
+                }
+            }
+        }
+        worlds.clear();
+    }
+
+    private static int offset(int chunkX, int chunkZ) {
+        return HEADER_BYTES + (((chunkZ & REGION_MASK) << REGION_SHIFT) | (chunkX & REGION_MASK)) * RECORD_BYTES;
+    }
+
+    private static Entry read(MappedByteBuffer region, int chunkX, int chunkZ) {
+        int at = offset(chunkX, chunkZ);
+        if (region.getInt(at) != GENERATED) {
+            return null;
+        }
+        int oreKinds = region.getShort(at + 30) & 0xFFFF;
+        int recorded = Math.min(oreKinds, RECORDED_ORES);
+        int[] oreHashes = new int[recorded];
+        int[] oreBlocks = new int[recorded];
+        for (int i = 0; i < recorded; i++) {
+            oreHashes[i] = region.getInt(at + SUMMARY_BYTES + i * 8);
+            oreBlocks[i] = region.getInt(at + SUMMARY_BYTES + i * 8 + 4);
+        }
+        return new Entry(chunkX, chunkZ,
+                Integer.toUnsignedLong(region.getInt(at + 4)),
+                region.getLong(at + 8),
+                region.getLong(at + 16),
+                region.getInt(at + 24),
+                region.getShort(at + 28) & 0xFFFF,
+                oreKinds, oreHashes, oreBlocks);
+    }
+
+    private MappedByteBuffer region(String world, int regionX, int regionZ, boolean create) {
+        ConcurrentHashMap<Long, MappedByteBuffer> regions = worlds.computeIfAbsent(world, w -> new ConcurrentHashMap<>());
+        long key = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+        MappedByteBuffer region = regions.get(key);
+        if (region != null) {
+            return region;
+        }
+
+        Set<Long> absent = missing.computeIfAbsent(world, w -> ConcurrentHashMap.newKeySet());
+        if (!create && absent.contains(key)) {
+            return null;
+        }
+        Path file = worldDir(world).resolve("r." + regionX + "." + regionZ + ".dat");
+        if (!create && !Files.exists(file)) {
+            absent.add(key);
+            return null;
+        }
+
+        // Two threads may map the same file; both views share the same pages
+        try {
+            region = map(file);
+        } catch (IOException | RuntimeException e) {
+            GenerationMetrics.GLOBAL.recordSwallowed(e);
+            return null;
+        }
+
+        if (regions.size() >= MAX_OPEN_REGIONS) {
+            // The mapping stays valid for anyone still holding it
+            Iterator<Long> keys = regions.keySet().iterator();
+            for (int i = 0; i < MAX_OPEN_REGIONS / 4 && keys.hasNext(); i++) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        MappedByteBuffer existing = regions.putIfAbsent(key, region);
+        absent.remove(key);
+        return existing != null ? existing : region;
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file to full size, zero-filled
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+            int magic = region.getInt(0);
+            if (magic == MAGIC && region.getInt(4) == VERSION_SUMMARY_ONLY && region.getInt(8) == SUMMARY_BYTES) {
+                upgradeSummaryOnly(region);
+                region.putInt(4, VERSION);
+                region.putInt(8, RECORD_BYTES);
+            } else if (magic != MAGIC || region.getInt(4) != VERSION) {
+                if (magic != 0) {
+                    LOGGER.atWarning().log("Resetting ledger region %s: unknown format", file.getFileName());
+                    for (int at = 0; at < REGION_BYTES; at += 8) {
+                        region.putLong(at, 0L);
+                    }
+                }
+                region.putInt(0, MAGIC);
+                region.putInt(4, VERSION);
+                region.putInt(8, RECORD_BYTES);
+            }
+            return region;
+        }
+    }
+
+    /**
+     * Spreads version 1 records out to the current size, with no per-ore part.
+     * Goes from the last record back, so each one moves before anything overwrites it.
+     */
+    private static void upgradeSummaryOnly(MappedByteBuffer region) {
+        for (int i = REGION_CHUNKS * REGION_CHUNKS - 1; i >= 0; i--) {
+            int from = HEADER_BYTES + i * SUMMARY_BYTES;
+            int to = HEADER_BYTES + i * RECORD_BYTES;
+            for (int b = SUMMARY_BYTES - 8; b >= 0; b -= 8) {
+                region.putLong(to + b, region.getLong(from + b));
+            }
+            for (int b = SUMMARY_BYTES; b < RECORD_BYTES; b += 8) {
+                region.putLong(to + b, 0L);
+            }
+            // Old records list no ores, so don't claim any
+            if (region.getInt(to) == GENERATED) {
+                region.putShort(to + 30, (short) 0);
+            }
+        }
+    }
+
+    private Path worldDir(String world) {
+        // World names are user-chosen; keep them path-safe
+        return root.resolve(world.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    /**
+     * {@code oreHashes}/{@code oreBlocks} hold the first {@link #RECORDED_ORES} ores by name hash;
+     * records from before per-ore counts have none and an {@code oreKinds} of 0.
+     */
+    record Entry(int chunkX, int chunkZ, long generatedAtSeconds, long fingerprint, long layoutHash,
+                 int blocks, int veins, int oreKinds, int[] oreHashes, int[] oreBlocks) {
+
+        /**
+         * Blocks of the ore written in the chunk, or -1 when the record can't tell
+         * (more ores than are kept, or an older record).
+         */
+        int blocksOf(String oreName) {
+            int hash = oreName.hashCode();
+            for (int i = 0; i < oreHashes.length; i++) {
+                if (oreHashes[i] == hash) return oreBlocks[i];
+            }
+            return oreKinds > oreHashes.length || oreKinds == 0 && blocks > 0 ? -1 : 0;
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(Entry entry);
+    }
+}
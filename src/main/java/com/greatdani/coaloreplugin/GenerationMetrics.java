@@ -0,0 +1,241 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What natural generation has been doing since startup (or the last reset).
+ * Everything is striped counters or lock-free histograms, and the handler only
+ * touches it a handful of times per chunk, never per block.
+ */
+final class GenerationMetrics {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    static final GenerationMetrics GLOBAL = new GenerationMetrics();
+
+    final LatencyHistogram chunkNanos = new LatencyHistogram();
+    final LongAdder veinsAttempted = new LongAdder();
+    final LongAdder veinsPlaced = new LongAdder();
+    // Noise field records (PlacementMode NoiseField), kept out of the vein counts
+    final LongAdder fieldsAttempted = new LongAdder();
+    final LongAdder fieldsPlaced = new LongAdder();
+    final LongAdder blocksPlaced = new LongAdder();
+    final LongAdder zoneBiomeRejections = new LongAdder();
+    final LongAdder swallowedErrors = new LongAdder();
+
+    // Host-rock census: lattice reads spent vs cell checks it saved; being a sample, some skipped work could have placed
+    final LongAdder censusReads = new LongAdder();
+    final LongAdder censusCellsConsidered = new LongAdder();
+    final LongAdder censusCellsSkipped = new LongAdder();
+    final LongAdder censusVeinsMoved = new LongAdder();
+    final LongAdder censusVeinsDropped = new LongAdder();
+
+    // Depth-relative veins: surface columns scanned, veins with no ground to go into
+    final LongAdder surfaceColumnsScanned = new LongAdder();
+    final LongAdder depthVeinsDropped = new LongAdder();
+
+    // Cross-chunk vein cells: waiting now, and stored/applied/expired/skipped so far
+    final AtomicLong pendingCells = new AtomicLong();
+    final LongAdder pendingStored = new LongAdder();
+    final LongAdder pendingApplied = new LongAdder();
+    final LongAdder pendingExpired = new LongAdder();
+    final LongAdder pendingSkipped = new LongAdder();
+
+    private final Map<String, LongAdder> blocksPerOre = new ConcurrentHashMap<>();
+
+    // Only the first swallowed exception is logged, the rest are just counted
+    private final AtomicBoolean errorLogged = new AtomicBoolean();
+
+    private volatile long resetAtNanos = System.nanoTime();
+
+    void recordBlocks(String oreName, int count) {
+        blocksPlaced.add(count);
+        blocksPerOre.computeIfAbsent(oreName, k -> new LongAdder()).add(count);
+    }
+
+    void recordSwallowed(Exception e) {
+        swallowedErrors.increment();
+        if (errorLogged.compareAndSet(false, true)) {
+            LOGGER.atWarning().log("Block access failed (further failures are only counted, see /coalore stats): %s", e);
+        }
+    }
+
+    void reset() {
+        chunkNanos.reset();
+        veinsAttempted.reset();
+        veinsPlaced.reset();
+        fieldsAttempted.reset();
+        fieldsPlaced.reset();
+        blocksPlaced.reset();
+        zoneBiomeRejections.reset();
+        swallowedErrors.reset();
+        censusReads.reset();
+        censusCellsConsidered.reset();
+        censusCellsSkipped.reset();
+        censusVeinsMoved.reset();
+        censusVeinsDropped.reset();
+        surfaceColumnsScanned.reset();
+        depthVeinsDropped.reset();
+        pendingStored.reset();
+        pendingApplied.reset();
+        pendingExpired.reset();
+        pendingSkipped.reset();
+        blocksPerOre.clear();
+        errorLogged.set(false);
+        resetAtNanos = System.nanoTime();
+    }
+
+    List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        long chunks = chunkNanos.count();
+        double seconds = Math.max(1e-9, (System.nanoTime() - resetAtNanos) / 1e9);
+
+        lines.add(String.format("Chunks: %d (%.1f/s over %.0fs)", chunks, chunks / seconds, seconds));
+        if (chunks > 0) {
+            lines.add(String.format("Handler time: avg %.0fus, p50 %.0fus, p99 %.0fus, max %.0fus",
+                    chunkNanos.mean() / 1e3, chunkNanos.percentile(0.50) / 1e3,
+                    chunkNanos.percentile(0.99) / 1e3, chunkNanos.max() / 1e3));
+        }
+
+        long attempted = veinsAttempted.sum();
+        long placed = veinsPlaced.sum();
+        lines.add(String.format("Veins: %d placed of %d attempted (%.1f%%)",
+                placed, attempted, attempted > 0 ? placed * 100.0 / attempted : 0.0));
+        long fields = fieldsAttempted.sum();
+        if (fields > 0) {
+            lines.add(String.format("Noise fields: %d placed ore of %d filled in", fieldsPlaced.sum(), fields));
+        }
+        lines.add(String.format("Blocks placed: %d", blocksPlaced.sum()));
+        new TreeMap<>(blocksPerOre).forEach((ore, count) ->
+                lines.add(String.format("  %s: %d", ore, count.sum())));
+        long considered = censusCellsConsidered.sum();
+        if (considered > 0) {
+            long skipped = censusCellsSkipped.sum();
+            lines.add(String.format("Host-rock census: skipped %d of %d cell checks (%.1f%%) for %d lattice reads; %d veins moved, %d dropped (sampled, so some could have placed)",
+                    skipped, considered, skipped * 100.0 / considered, censusReads.sum(),
+                    censusVeinsMoved.sum(), censusVeinsDropped.sum()));
+        }
+        long columns = surfaceColumnsScanned.sum();
+        if (columns > 0) {
+            lines.add(String.format("Surface heights: %d columns scanned, %d depth veins without ground",
+                    columns, depthVeinsDropped.sum()));
+        }
+        long stored = pendingStored.sum();
+        if (stored > 0 || pendingCells.get() > 0) {
+            lines.add(String.format("Cross-chunk cells: %d pending, %d stored, %d applied, %d expired, %d skipped (neighbour already generated)",
+                    pendingCells.get(), stored, pendingApplied.sum(), pendingExpired.sum(), pendingSkipped.sum()));
+        }
+        lines.add(String.format("Zone/biome rejections: %d", zoneBiomeRejections.sum()));
+        lines.add(String.format("Swallowed errors: %d", swallowedErrors.sum()));
+        return lines;
+    }
+
+    /**
+     * Appends a timestamped snapshot to {@code file}.
+     */
+    void dump(Path file) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("== ").append(Instant.now()).append(System.lineSeparator());
+        for (String line : describe()) {
+            out.append(line).append(System.lineSeparator());
+        }
+        Files.writeString(file, out, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Log-linear histogram of nanosecond durations: 4 sub-buckets per power of
+     * two, so percentiles are within ~25%. Recording is a single atomic add.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n > 0 ? (double) sum.sum() / n : 0;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile.
+         */
+        long percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.*;
+
+/**
+ * Immutable, pre-resolved view of {@link CoalOreConfig} used by the chunk handlers.
+ * Everything the hot path needs is clamped, resolved and interned here once, so
+ * generation never touches the codec objects or compares strings per chunk.
+ */
+public final class GenerationPlan {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    final BlockCache.BlockCaches cache;
+
+    // Natural coal pass, null when EnableNaturalGeneration is off
+    final OrePass coal;
+    final OrePass[] customOres;
+
+    // Walk the veins of large chunks on several threads
+    final boolean parallelVeins;
+
+    // Sample the chunk's host rock before applying, see HostRockCensus
+    final boolean hostRockCensus;
+
+    // Keep vein cells that fall in neighbouring chunks, see PendingPlacements
+    final boolean crossChunkVeins;
+
+    // Union of every pass's Y range
+    final int minY;
+    final int maxY;
+
+    // Hash of every setting that affects the layout; the same config gives the same value across restarts
+    final long fingerprint;
+
+    GenerationPlan(BlockCache.BlockCaches cache, OrePass coal, OrePass[] customOres, boolean parallelVeins,
+                   boolean hostRockCensus, boolean crossChunkVeins) {
+        this(cache, coal, customOres, parallelVeins, hostRockCensus, crossChunkVeins, null);
+    }
+
+    private GenerationPlan(BlockCache.BlockCaches cache, OrePass coal, OrePass[] customOres, boolean parallelVeins,
+                           boolean hostRockCensus, boolean crossChunkVeins, GenerationPlan whole) {
+        this.cache = cache;
+        this.coal = coal;
+        this.customOres = customOres;
+        this.parallelVeins = parallelVeins;
+        this.hostRockCensus = hostRockCensus;
+        this.crossChunkVeins = crossChunkVeins;
+
+        int lo = coal != null ? coal.minY : CoalOreConfig.WORLD_MAX_Y;
+        int hi = coal != null ? coal.maxY : CoalOreConfig.WORLD_MIN_Y;
+        for (OrePass pass : customOres) {
+            lo = Math.min(lo, pass.minY);
+            hi = Math.max(hi, pass.maxY);
+        }
+        this.minY = lo;
+        this.maxY = hi;
+        this.fingerprint = whole != null ? whole.fingerprint : fingerprint();
+    }
+
+    /**
+     * This plan with only some of its passes, for adding ores to existing chunks.
+     * Each pass keeps its random streams, and the chunk is recorded in the ledger
+     * under this plan's fingerprint.
+     */
+    GenerationPlan withPasses(OrePass coal, OrePass[] customOres) {
+        return new GenerationPlan(cache, coal, customOres, parallelVeins, hostRockCensus, crossChunkVeins, this);
+    }
+
+    boolean isEmpty() {
+        return coal == null && customOres.length == 0;
+    }
+
+    boolean hasNoiseFields() {
+        if (coal != null && coal.noiseField != null) {
+            return true;
+        }
+        for (OrePass pass : customOres) {
+            if (pass.noiseField != null) return true;
+        }
+        return false;
+    }
+
+    boolean hasDepthVeins() {
+        if (coal != null && coal.depthRelative()) {
+            return true;
+        }
+        for (OrePass pass : customOres) {
+            if (pass.depthRelative()) return true;
+        }
+        return false;
+    }
+
+    static GenerationPlan compile(CoalOreConfig cfg, BlockCache.BlockCaches cache) {
+        return compile(cfg, cache, null);
+    }
+
+    /**
+     * Compiles the plan for one world, applying its {@link WorldOverride} if it has one.
+     */
+    static GenerationPlan compile(CoalOreConfig cfg, BlockCache.BlockCaches cache, WorldOverride override) {
+        if (override != null && !override.isEnabled()) {
+            return new GenerationPlan(cache, null, new OrePass[0], cfg.isParallelVeins(), cfg.isHostRockCensus(),
+                    cfg.getMaxPendingPlacements() > 0);
+        }
+
+        OrePass coal = null;
+        if (override != null ? override.isNaturalGenerationEnabled(cfg) : cfg.isNaturalGenerationEnabled()) {
+            coal = orePass(cfg, "Coal", 0, null, cfg.getDistribution(),
+                    cfg.getMinY(), cfg.getMaxY(),
+                    cfg.hasDepthRange() ? cfg.getMinDepth() : -1, cfg.hasDepthRange() ? cfg.getMaxDepth() : -1,
+                    override != null ? override.getVeinsPerChunk(cfg) : cfg.getVeinsPerChunk(),
+                    override != null ? override.getMinVeinSize(cfg) : cfg.getMinVeinSize(),
+                    override != null ? override.getMaxVeinSize(cfg) : cfg.getMaxVeinSize(),
+                    override != null ? override.getSpawnChance(cfg) : cfg.getSpawnChance(),
+                    VeinShape.byName(cfg.getVeinShape(), VeinShape.BLOB),
+                    NoiseField.compile(cfg.getPlacementMode(), cfg.getNoiseField(), "Coal"),
+                    cfg.getAllowedZones(), cfg.getAllowedBiomes(), cfg.getProfiles());
+        }
+
+        List<OrePass> custom = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (CustomOre customOre : cfg.getCustomOres()) {
+            BlockCache.OreType oreType = cache.getOreByName(customOre.getOreName());
+            if (oreType == null) continue;  // Already reported when the cache was built
+            if (override != null && !override.allowsCustomOre(customOre.getOreName())) continue;
+
+            // The same ore listed twice gets its own stream for each entry
+            int occurrence = occurrences.merge(customOre.getOreName(), 1, Integer::sum) - 1;
+            custom.add(orePass(cfg, customOre.getOreName(), occurrence, oreType, customOre.getDistribution(),
+                    customOre.getMinY(), customOre.getMaxY(),
+                    customOre.hasDepthRange() ? customOre.getMinDepth() : -1,
+                    customOre.hasDepthRange() ? customOre.getMaxDepth() : -1,
+                    customOre.getVeinsPerChunk(),
+                    customOre.getMinVeinSize(), customOre.getMaxVeinSize(), customOre.getSpawnChance(),
+                    VeinShape.byName(customOre.getVeinShape(), VeinShape.BLOB),
+                    NoiseField.compile(customOre.getPlacementMode(), customOre.getNoiseField(), customOre.getOreName()),
+                    customOre.getAllowedZones(), customOre.getAllowedBiomes(), customOre.getProfiles()));
+        }
+
+        return new GenerationPlan(cache, coal, custom.toArray(new OrePass[0]), cfg.isParallelVeins(),
+                cfg.isHostRockCensus(), cfg.getMaxPendingPlacements() > 0);
+    }
+
+    /**
+     * The pass with its zone/biome rules, and a variant of it for each of its
+     * profiles. Profiles the config doesn't define are skipped with a warning.
+     */
+    private static OrePass orePass(CoalOreConfig cfg, String name, int occurrence, BlockCache.OreType ore,
+                                   Distribution distribution, int minY, int maxY, int minDepth, int maxDepth,
+                                   int veinsPerChunk, int minVeinSize, int maxVeinSize, double spawnChance,
+                                   VeinShape shape, NoiseField noiseField,
+                                   List<String> allowedZones, List<String> allowedBiomes, List<String> profileNames) {
+        List<ZoneProfile> profiles = new ArrayList<>();
+        List<OrePass> variants = new ArrayList<>();
+        for (String profileName : profileNames) {
+            ZoneProfile profile = cfg.getZoneProfile(profileName);
+            if (profile == null) {
+                LOGGER.atWarning().log("Unknown zone profile '%s' for %s, ignoring it", profileName, name);
+                continue;
+            }
+            profiles.add(profile);
+            variants.add(new OrePass(name, occurrence, ore, distribution,
+                    profile.getMinY(minY, maxY), profile.getMaxY(minY, maxY), minDepth, maxDepth,
+                    profile.getVeinsPerChunk(veinsPerChunk),
+                    profile.getMinVeinSize(minVeinSize, maxVeinSize), profile.getMaxVeinSize(maxVeinSize),
+                    profile.getSpawnChance(spawnChance), shape, noiseField, null));
+        }
+
+        return new OrePass(name, occurrence, ore, distribution, minY, maxY, minDepth, maxDepth,
+                veinsPerChunk, minVeinSize, maxVeinSize, spawnChance, shape, noiseField,
+                PlaceRules.compile(allowedZones, allowedBiomes, profiles, variants));
+    }
+
+    private long fingerprint() {
+        long h = mix(0, (hostRockCensus ? 1 : 0) | (crossChunkVeins ? 2 : 0));
+        for (int i = 0; i < cache.oreCount(); i++) {
+            BlockCache.OreType ore = cache.getOre(i);
+            h = mix(h, ore.name.hashCode());
+            h = mix(h, ore.id);
+            h = mix(h, ((long) ore.minY << 32) | (ore.maxY & 0xFFFFFFFFL));
+            h = mix(h, ore.replaceableMask.hashCode());
+        }
+        h = coal != null ? coal.fingerprint(h) : mix(h, -1);
+        for (OrePass pass : customOres) {
+            h = pass.fingerprint(h);
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        return OreSeeds.mix64(h ^ OreSeeds.mix64(value + 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * One ore's compiled settings. Checks are meant to run cheapest-first:
+     * spawn roll, then zone/biome (which may need a resolver lookup). Ores with
+     * zone profiles look the zone up first, since it picks their spawn chance.
+     */
+    static final class OrePass {
+        final String name;
+
+        // Seeds this ore's random streams, see OreSeeds
+        final long seedKey;
+
+        // Specific ore to place, or null to pick the coal variant matching the host block
+        final BlockCache.OreType ore;
+
+        final int minY;
+        final int maxY;
+
+        // Depth below the surface the vein starts at, -1 when placed by absolute Y only
+        final int minDepth;
+        final int maxDepth;
+
+        // Offsets into the Y range from minY, and into the depth range from maxDepth (null unless depthRelative)
+        final InverseCdf yDistribution;
+        final InverseCdf depthDistribution;
+
+        final int veinsPerChunk;
+        final int minVeinSize;
+        final int veinSizeRange;
+        final double spawnChance;
+        final VeinShape shape;
+
+        // Placed as a noise field instead of veins when set; the vein and depth settings are then unused
+        final NoiseField noiseField;
+
+        // Allowed zones/biomes and profiles, null = the same everywhere
+        final PlaceRules places;
+        final boolean restricted;
+        final boolean profiled;
+
+        OrePass(String name, int occurrence, BlockCache.OreType ore, Distribution distribution, int minY, int maxY,
+                int minDepth, int maxDepth, int veinsPerChunk, int minVeinSize, int maxVeinSize, double spawnChance,
+                VeinShape shape, NoiseField noiseField, PlaceRules places) {
+            this.name = name;
+            this.seedKey = OreSeeds.oreKey(name, occurrence);
+            this.ore = ore;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.minDepth = minDepth;
+            this.maxDepth = maxDepth;
+            this.yDistribution = InverseCdf.compile(distribution, maxY - minY, minY, 1);
+            this.depthDistribution = maxDepth >= 0
+                    ? InverseCdf.compile(distribution, maxDepth - minDepth + 1, maxDepth, -1) : null;
+            this.veinsPerChunk = veinsPerChunk;
+            this.minVeinSize = minVeinSize;
+            this.veinSizeRange = Math.max(1, maxVeinSize - minVeinSize + 1);
+            this.spawnChance = spawnChance;
+            this.shape = shape;
+            this.noiseField = noiseField;
+            this.places = places;
+            this.restricted = places != null;
+            this.profiled = places != null && places.hasProfiles();
+        }
+
+        boolean depthRelative() {
+            return maxDepth >= 0;
+        }
+
+        long fingerprint(long h) {
+            h = mix(h, seedKey);
+            h = mix(h, ore != null ? ore.index : -1);
+            h = mix(h, ((long) minY << 32) | (maxY & 0xFFFFFFFFL));
+            h = mix(h, ((long) minDepth << 32) | (maxDepth & 0xFFFFFFFFL));
+            h = mix(h, ((long) veinsPerChunk << 32) | (minVeinSize & 0xFFFFFFFFL));
+            h = mix(h, ((long) veinSizeRange << 32) | shape.ordinal());
+            h = mix(h, yDistribution.hash());
+            h = mix(h, depthDistribution != null ? depthDistribution.hash() : -1);
+            h = mix(h, noiseField != null ? noiseField.hash() : -1);
+            h = mix(h, Double.doubleToLongBits(spawnChance));
+            // Zone/biome ids are interned per run, so hash the patterns instead
+            h = mix(h, places != null ? places.zonesHash() : 0);
+            h = mix(h, places != null ? places.biomesHash() : 0);
+            return profiled ? places.profilesHash(h) : h;
+        }
+
+        /**
+         * This pass, or its variant for the profile that applies at {@code zoneBiome};
+         * null if the ore isn't allowed there.
+         */
+        OrePass in(ZoneBiomeResolver.ZoneBiome zoneBiome) {
+            int entry = places.select(zoneBiome);
+            return entry == PlaceRules.BLOCKED ? null : entry == PlaceRules.BASE ? this : places.variant(entry);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One loaded config together with everything resolved from it. Built off the hot
+ * path and published whole, so a chunk handler reads a single reference and
+ * keeps using that snapshot until it's done, even if a reload lands meanwhile.
+ */
+final class GenerationSnapshot {
+
+    final int version;
+    final CoalOreConfig config;
+
+    // Both null when no configured ore resolved to a block type
+    final BlockCache.BlockCaches cache;
+    final GenerationPlan plan;
+
+    final long createdAtMillis = System.currentTimeMillis();
+
+    // Chunks generated while this snapshot was active
+    final LongAdder chunksGenerated = new LongAdder();
+
+    GenerationSnapshot(int version, CoalOreConfig config, BlockCache.BlockCaches cache, GenerationPlan plan) {
+        this.version = version;
+        this.config = config;
+        this.cache = cache;
+        this.plan = plan;
+    }
+
+    boolean canGenerate() {
+        return plan != null && !plan.isEmpty();
+    }
+}
@@ -0,0 +1,142 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.Arrays;
+
+/**
+ * Which ores the lattice found host rock for in each 32-block section of a
+ * chunk, from a sparse lattice of block reads (4x4 columns every 4 Y). Lets the
+ * applier skip veins of ores whose rock it didn't find in the chunk, move veins
+ * that started in a section where it found none, and skip cell checks in such
+ * sections. One instance per thread, reused.
+ * <p>
+ * This is lossy: rock that falls between the samples isn't seen, so veins and
+ * cells that could have placed there are dropped, skipped or moved anyway. That
+ * changes the layout and lowers the density against a run without the census,
+ * which is why HostRockCensus is opt-in.
+ */
+final class HostRockCensus {
+
+    static final int SECTION_SHIFT = 5;
+    static final int SECTIONS = (CoalOreConfig.WORLD_MAX_Y >> SECTION_SHIFT) + 1;
+
+    // 4x4 columns per level, 8 levels per section = 128 reads per section
+    private static final int GRID = 4;
+    private static final int CELL = CoalOreConfig.CHUNK_SIZE / GRID;
+    private static final int Y_STEP = 4;
+
+    // Sections within this many blocks of the plan's Y range are sampled; veins wander
+    private static final int Y_MARGIN = 16;
+
+    private static final ThreadLocal<HostRockCensus> LOCAL = ThreadLocal.withInitial(HostRockCensus::new);
+
+    private final long[] sections = new long[SECTIONS];
+    private long present;
+    private int reads;
+
+    private HostRockCensus() {
+    }
+
+    /**
+     * Samples the chunk and returns this thread's census for it, or null when the
+     * cache has too many ores to track as bitmasks.
+     */
+    static HostRockCensus take(BlockAccess blocks, int chunkX, int chunkZ, BlockCache.BlockCaches cache,
+                               int minY, int maxY) {
+        if (!cache.hasHostMasks()) {
+            return null;
+        }
+
+        HostRockCensus census = LOCAL.get();
+        census.sample(blocks, chunkX, chunkZ, cache, minY, maxY);
+        return census;
+    }
+
+    private void sample(BlockAccess blocks, int chunkX, int chunkZ, BlockCache.BlockCaches cache, int minY, int maxY) {
+        Arrays.fill(sections, 0L);
+        present = 0L;
+        reads = 0;
+
+        int baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        int firstSection = firstSection(minY);
+        int lastSection = lastSection(maxY);
+
+        for (int section = firstSection; section <= lastSection; section++) {
+            long mask = 0L;
+            int sectionBase = section << SECTION_SHIFT;
+
+            for (int level = 0; level < (1 << SECTION_SHIFT) / Y_STEP; level++) {
+                int y = sectionBase + level * Y_STEP + 1;
+                if (y > CoalOreConfig.WORLD_MAX_Y) break;
+
+                // Shift the lattice every level so the section is covered more evenly
+                int offsetX = (level * 5) & (CELL - 1);
+                int offsetZ = (level * 3 + CELL / 2) & (CELL - 1);
+                for (int gz = 0; gz < GRID; gz++) {
+                    for (int gx = 0; gx < GRID; gx++) {
+                        int block = blocks.getBlock(baseX + gx * CELL + offsetX, y, baseZ + gz * CELL + offsetZ);
+                        mask |= cache.hostMask(block);
+                    }
+                }
+                reads += GRID * GRID;
+            }
+
+            sections[section] = mask;
+            present |= mask;
+        }
+    }
+
+    private static int firstSection(int minY) {
+        return Math.max(0, (minY - Y_MARGIN) >> SECTION_SHIFT);
+    }
+
+    private static int lastSection(int maxY) {
+        return Math.min(SECTIONS - 1, Math.max(0, maxY + Y_MARGIN) >> SECTION_SHIFT);
+    }
+
+    /**
+     * Lowest and highest Y a census of a plan spanning {@code minY..maxY} can read.
+     */
+    static int lowestRead(int minY) {
+        return firstSection(minY) << SECTION_SHIFT;
+    }
+
+    static int highestRead(int maxY) {
+        return Math.min(CoalOreConfig.WORLD_MAX_Y, (lastSection(maxY) << SECTION_SHIFT) + (1 << SECTION_SHIFT) - 1);
+    }
+
+    int reads() {
+        return reads;
+    }
+
+    boolean anyHost(long oreMask) {
+        return (present & oreMask) != 0;
+    }
+
+    boolean mayHost(long oreMask, int y) {
+        return y >= 0 && (y >> SECTION_SHIFT) < SECTIONS && (sections[y >> SECTION_SHIFT] & oreMask) != 0;
+    }
+
+    /**
+     * Vertical shift (a multiple of the section height) that moves a vein starting
+     * at {@code originY} into the nearest section with host rock, keeping the origin
+     * within {@code [minY, maxY]}. 0 if the origin's section already has host rock,
+     * {@link Integer#MIN_VALUE} if no section qualifies.
+     */
+    int shiftFor(long oreMask, int originY, int minY, int maxY) {
+        if (mayHost(oreMask, originY)) {
+            return 0;
+        }
+
+        for (int distance = 1; distance < SECTIONS; distance++) {
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int dy = sign * (distance << SECTION_SHIFT);
+                int y = originY + dy;
+                if (y >= minY && y <= maxY && mayHost(oreMask, y)) {
+                    return dy;
+                }
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+}
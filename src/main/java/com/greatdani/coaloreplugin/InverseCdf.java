@@ -0,0 +1,120 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * A compiled {@link Distribution}: offsets into an ore's range, offset 0 being
+ * the deep end, laid out so that a uniform index into the table gives an offset
+ * with the configured spread. Sampling is one bounded draw and one array read.
+ * Uniform needs no table and draws the offset directly, the same draw the
+ * plugin always used for custom ores.
+ */
+final class InverseCdf {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    // Power of two, so the index draw is a single multiply-shift
+    static final int TABLE_SIZE = 1024;
+
+    // Number of possible offsets, 0 .. span - 1
+    final int span;
+
+    // Offset per quantile, null for uniform
+    private final int[] table;
+
+    private InverseCdf(int span, int[] table) {
+        this.span = span;
+        this.table = table;
+    }
+
+    int sample(SplittableRandom random) {
+        return table == null ? random.nextInt(span) : table[random.nextInt(TABLE_SIZE)];
+    }
+
+    // For GenerationPlan's fingerprint
+    long hash() {
+        return ((long) span << 32) | (table == null ? 0 : Arrays.hashCode(table) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Compiles {@code config} over {@code span} offsets. {@code deepEnd} is the
+     * config value (Y or depth) at offset 0 and {@code step} is +1 when values
+     * grow with the offset (Y) or -1 when they shrink (depth), so Peak can be
+     * given in the same units as the range.
+     */
+    static InverseCdf compile(Distribution config, int span, int deepEnd, int step) {
+        span = Math.max(1, span);
+        String type = config.getType().trim().toLowerCase(Locale.ROOT);
+        if (span == 1 || type.equals("uniform")) {
+            return new InverseCdf(span, null);
+        }
+
+        int[] table = new int[TABLE_SIZE];
+        double peak = (config.getPeak() - deepEnd) * step + 0.5;
+        double[] density = new double[span];
+        switch (type) {
+            case "power" -> {
+                // Closed form: offset = u^exponent of the range, like the old coal skew
+                double exponent = config.getExponent();
+                for (int i = 0; i < TABLE_SIZE; i++) {
+                    double u = (i + 0.5) / TABLE_SIZE;
+                    table[i] = Math.min(span - 1, (int) (Math.pow(u, exponent) * span));
+                }
+                return new InverseCdf(span, table);
+            }
+            case "triangular" -> {
+                double top = Math.max(0, Math.min(span, peak));
+                for (int k = 0; k < span; k++) {
+                    double x = k + 0.5;
+                    density[k] = x <= top ? (top == 0 ? 1 : x / top) : (span == top ? 1 : (span - x) / (span - top));
+                }
+            }
+            case "gaussianpeak" -> {
+                double spread = config.getSpread();
+                for (int k = 0; k < span; k++) {
+                    double z = (k + 0.5 - peak) / spread;
+                    density[k] = Math.exp(-0.5 * z * z);
+                }
+            }
+            case "piecewise" -> {
+                double[] weights = config.getWeights();
+                if (weights.length == 0) {
+                    LOGGER.atWarning().log("Piecewise distribution without Weights, using Uniform");
+                    return new InverseCdf(span, null);
+                }
+                for (int k = 0; k < span; k++) {
+                    int band = (int) ((long) k * weights.length / span);
+                    density[k] = weights[band];
+                }
+            }
+            default -> {
+                LOGGER.atWarning().log("Unknown distribution type '%s', using Uniform", config.getType());
+                return new InverseCdf(span, null);
+            }
+        }
+
+        double total = 0;
+        for (double d : density) {
+            total += d;
+        }
+        if (!(total > 0)) {
+            LOGGER.atWarning().log("%s distribution has no weight inside the range, using Uniform", config.getType());
+            return new InverseCdf(span, null);
+        }
+
+        // Walk the CDF once, handing each quantile the first offset whose cumulative weight passes it
+        double cumulative = density[0];
+        int k = 0;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            double target = (i + 0.5) / TABLE_SIZE * total;
+            while (cumulative < target && k < span - 1) {
+                cumulative += density[++k];
+            }
+            table[i] = k;
+        }
+        return new InverseCdf(span, table);
+    }
+}
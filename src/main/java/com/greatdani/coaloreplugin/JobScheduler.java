@@ -0,0 +1,293 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs long command work (fills, retrofits) on the world thread a little at a
+ * time. Every tick each world with jobs gets one task on its thread that runs
+ * units of its jobs until the millisecond budget is used up, split evenly
+ * between them, so one big command never holds the tick for long.
+ */
+final class JobScheduler {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    static final long TICK_MILLIS = 50;
+
+    // How often a running job tells whoever started it how far it got
+    private static final long REPORT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final long budgetNanos;
+    private final int maxJobsPerWorld;
+
+    private final Map<String, WorldJobs> worlds = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final ScheduledExecutorService ticker;
+
+    JobScheduler(int budgetMillis, int maxJobsPerWorld) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.maxJobsPerWorld = maxJobsPerWorld;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CoalOre-Jobs");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues {@code job} on its world.
+     *
+     * @return false if the world already runs the maximum number of jobs
+     */
+    boolean submit(Job job) {
+        WorldJobs jobs = worlds.computeIfAbsent(job.worldName, name -> new WorldJobs(job.world));
+        synchronized (jobs) {
+            if (jobs.running.size() >= maxJobsPerWorld) {
+                return false;
+            }
+            job.id = ids.incrementAndGet();
+            job.lastReport = System.nanoTime();
+            jobs.running.add(job);
+        }
+        return true;
+    }
+
+    List<Job> running(String worldName) {
+        WorldJobs jobs = worlds.get(worldName);
+        return jobs != null ? List.copyOf(jobs.running) : List.of();
+    }
+
+    Job find(int id) {
+        for (WorldJobs jobs : worlds.values()) {
+            for (Job job : jobs.running) {
+                if (job.id == id) return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs {@code task} every {@code seconds} on the scheduler thread, for housekeeping.
+     */
+    ScheduledFuture<?> every(long seconds, Runnable task) {
+        return ticker.scheduleWithFixedDelay(task, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the jobs of a world that went away and lets go of the world; jobs that
+     * can resume later keep what they need for it.
+     */
+    void forget(String worldName) {
+        WorldJobs jobs = worlds.remove(worldName);
+        if (jobs != null) {
+            for (Job job : jobs.running) {
+                job.stop();
+            }
+        }
+    }
+
+    /**
+     * Stops every job; jobs that can resume later keep what they need for it.
+     */
+    void shutdown() {
+        ticker.shutdownNow();
+        for (WorldJobs jobs : worlds.values()) {
+            for (Job job : jobs.running) {
+                job.stop();
+            }
+        }
+        worlds.clear();
+    }
+
+    private void tick() {
+        for (WorldJobs jobs : worlds.values()) {
+            jobs.running.removeIf(job -> job.state != Job.State.RUNNING);
+            // One task queued on the world at a time, however slow its thread is
+            if (!jobs.running.isEmpty() && jobs.queued.compareAndSet(false, true)) {
+                try {
+                    jobs.world.execute(() -> runWorld(jobs));
+                } catch (Exception e) {
+                    jobs.queued.set(false);
+                    GenerationMetrics.GLOBAL.recordSwallowed(e);
+                }
+            }
+        }
+    }
+
+    // On the world thread
+    private void runWorld(WorldJobs jobs) {
+        jobs.queued.set(false);
+        List<Job> running = new ArrayList<>(jobs.running);
+        if (running.isEmpty()) {
+            return;
+        }
+
+        // Start with a different job each tick so none always gets the leftovers
+        int first = jobs.rotation++ % running.size();
+        long now = System.nanoTime();
+        long end = now + budgetNanos;
+        for (int i = 0; i < running.size(); i++) {
+            Job job = running.get((first + i) % running.size());
+            long slice = (end - System.nanoTime()) / (running.size() - i);
+            if (slice <= 0) break;
+
+            job.runSlice(System.nanoTime() + slice);
+
+            if (job.state == Job.State.RUNNING && System.nanoTime() - job.lastReport > REPORT_NANOS) {
+                job.lastReport = System.nanoTime();
+                job.report(String.format("%s #%d: %s", job.kind, job.id, job.progress()));
+            }
+        }
+    }
+
+    private static final class WorldJobs {
+        final World world;
+        final List<Job> running = new CopyOnWriteArrayList<>();
+        final AtomicBoolean queued = new AtomicBoolean();
+        int rotation;
+
+        WorldJobs(World world) {
+            this.world = world;
+        }
+    }
+
+    /**
+     * A piece of work split into small units. Units run on the world thread;
+     * ending a job from another thread waits for the unit in progress.
+     */
+    abstract static class Job {
+
+        enum State { RUNNING, FINISHED, CANCELLED, STOPPED, FAILED }
+
+        enum Step {
+            // Ran a unit, more to do
+            MORE,
+            // Nothing to do until a later tick (e.g. waiting on a chunk load)
+            YIELD,
+            DONE
+        }
+
+        final String kind;
+        final World world;
+        final String worldName;
+        private final Consumer<String> reporter;
+
+        volatile int id;
+        private volatile State state = State.RUNNING;
+        private volatile String failure;
+        private long lastReport;
+
+        /**
+         * @param reporter where progress messages go, or null for the log only
+         */
+        Job(String kind, World world, String worldName, Consumer<String> reporter) {
+            this.kind = kind;
+            this.world = world;
+            this.worldName = worldName;
+            this.reporter = reporter;
+        }
+
+        /**
+         * Runs one small unit of work.
+         */
+        abstract Step step();
+
+        /**
+         * How far the job got, for progress messages.
+         */
+        abstract String progress();
+
+        /**
+         * Called on the world thread before each tick's units.
+         */
+        void beginSlice() {
+        }
+
+        /**
+         * Called once when the job leaves RUNNING, under the job's lock.
+         */
+        void ended(State state) {
+        }
+
+        State state() {
+            return state;
+        }
+
+        String failure() {
+            return failure;
+        }
+
+        void cancel() {
+            end(State.CANCELLED, null);
+        }
+
+        /**
+         * Stops the job without calling it cancelled, e.g. on shutdown.
+         */
+        void stop() {
+            end(State.STOPPED, null);
+        }
+
+        void fail(String reason) {
+            end(State.FAILED, reason);
+        }
+
+        void report(String message) {
+            if (reporter != null) {
+                try {
+                    reporter.accept(message);
+                } catch (Exception e) {
+                    // The player may have left
+                    GenerationMetrics.GLOBAL.recordSwallowed(e);
+                }
+            }
+        }
+
+        final synchronized void runSlice(long deadline) {
+            try {
+                beginSlice();
+                while (state == State.RUNNING) {
+                    Step step = step();
+                    if (step == Step.DONE) {
+                        end(State.FINISHED, null);
+                    } else if (step == Step.YIELD || System.nanoTime() >= deadline) {
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.atWarning().log("%s #%d in %s failed: %s", kind, id, worldName, e);
+                end(State.FAILED, e.toString());
+            }
+        }
+
+        private synchronized void end(State end, String reason) {
+            if (state != State.RUNNING) {
+                return;
+            }
+            failure = reason;
+            state = end;
+            ended(end);
+            switch (end) {
+                case FINISHED -> report(String.format("%s #%d done: %s", kind, id, progress()));
+                case CANCELLED -> report(String.format("%s #%d cancelled: %s", kind, id, progress()));
+                case FAILED -> report(String.format("%s #%d failed: %s", kind, id, reason));
+                default -> {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.server.core.modules.entity.component.TransformComponent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Predicts which chunks are about to generate from each player's heading and
+ * plans their veins while the planner pool is otherwise idle. Positions are
+ * sampled on the world thread; velocity is derived from consecutive samples.
+ */
+final class MovementPrePlanner {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final long SAMPLE_INTERVAL_MS = 500;
+    // Below this (blocks/second) a player is treated as standing still
+    private static final double MIN_SPEED = 2.0;
+    // How far ahead in time the frontier is extrapolated
+    private static final double HORIZON_SECONDS = 4.0;
+
+    private final VeinPlanService planService;
+    private final Supplier<GenerationSnapshot> snapshotSupplier;
+    private final Function<World, WorldGenContext> contexts;
+    private final int frontierDistance;
+    private final int idleThreshold;
+
+    private final ScheduledExecutorService scheduler;
+    private final Map<UUID, Track> tracks = new ConcurrentHashMap<>();
+
+    /**
+     * @param contexts existing context of a world, or null if none of its chunks generated yet
+     */
+    MovementPrePlanner(VeinPlanService planService, Supplier<GenerationSnapshot> snapshotSupplier,
+                       Function<World, WorldGenContext> contexts, int frontierDistance, int idleThreshold) {
+        this.planService = planService;
+        this.snapshotSupplier = snapshotSupplier;
+        this.contexts = contexts;
+        this.frontierDistance = frontierDistance;
+        this.idleThreshold = idleThreshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CoalOre-PrePlanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::sampleWorlds, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+        tracks.clear();
+    }
+
+    private void sampleWorlds() {
+        try {
+            // Forget players that left or haven't been seen for a few rounds (each world samples separately)
+            long staleBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL_MS * 4);
+            tracks.values().removeIf(track -> track.lastNanos < staleBefore);
+
+            // Only use spare planner capacity; chunk-triggered plans come first
+            if (planService.inFlight() > idleThreshold) {
+                return;
+            }
+
+            Universe universe = Universe.get();
+            if (universe == null) {
+                return;
+            }
+            for (World world : universe.getWorlds().values()) {
+                world.execute(() -> sample(world));
+            }
+        } catch (Exception e) {
+            LOGGER.atWarning().log("Pre-planner sampling failed: %s", e.getMessage());
+        }
+    }
+
+    // Runs on the world thread; keep it to reading positions
+    private void sample(World world) {
+        List<Sample> samples = new ArrayList<>();
+        long now = System.nanoTime();
+
+        for (PlayerRef playerRef : world.getPlayerRefs()) {
+            Ref<EntityStore> ref = playerRef.getReference();
+            if (ref == null || !ref.isValid()) continue;
+
+            TransformComponent transform = ref.getStore().getComponent(ref, TransformComponent.getComponentType());
+            if (transform == null) continue;
+
+            Vector3d pos = transform.getPosition();
+            samples.add(new Sample(playerRef.getUuid(), pos.x, pos.z, now));
+        }
+
+        if (!samples.isEmpty()) {
+            scheduler.execute(() -> predict(world, samples));
+        }
+    }
+
+    private void predict(World world, List<Sample> samples) {
+        GenerationSnapshot snapshot = snapshotSupplier.get();
+        WorldGenContext context = contexts.apply(world);
+        // Without a resolver the predicted chunks' zones would come out wrong
+        if (snapshot == null || context == null || context.resolver == null) {
+            return;
+        }
+        GenerationPlan plan = context.planFor(snapshot);
+        if (plan == null || plan.isEmpty()) {
+            return;
+        }
+
+        for (Sample sample : samples) {
+            Track track = tracks.computeIfAbsent(sample.player, id -> new Track());
+            if (!track.update(sample) || track.speed() < MIN_SPEED) {
+                continue;
+            }
+
+            double speed = track.speed();
+            double dirX = track.velocityX / speed;
+            double dirZ = track.velocityZ / speed;
+
+            // New chunks appear at the edge of the loaded area, pushed further out the faster the player moves
+            int lead = (int) Math.ceil(speed * HORIZON_SECONDS / CoalOreConfig.CHUNK_SIZE);
+            int first = Math.max(1, frontierDistance - 1);
+            int last = frontierDistance + lead;
+
+            for (int step = first; step <= last; step++) {
+                double aheadX = sample.x + dirX * step * CoalOreConfig.CHUNK_SIZE;
+                double aheadZ = sample.z + dirZ * step * CoalOreConfig.CHUNK_SIZE;
+
+                // One chunk either side of the heading
+                for (int side = -1; side <= 1; side++) {
+                    double px = aheadX - dirZ * side * CoalOreConfig.CHUNK_SIZE;
+                    double pz = aheadZ + dirX * side * CoalOreConfig.CHUNK_SIZE;
+                    planService.schedule(context, plan,
+                            (int) Math.floor(px) >> CoalOreConfig.CHUNK_SHIFT,
+                            (int) Math.floor(pz) >> CoalOreConfig.CHUNK_SHIFT);
+                }
+            }
+        }
+    }
+
+    private record Sample(UUID player, double x, double z, long nanos) {
+    }
+
+    private static final class Track {
+        private boolean initialized;
+        private double lastX;
+        private double lastZ;
+        private long lastNanos;
+
+        // Smoothed blocks/second
+        double velocityX;
+        double velocityZ;
+
+        boolean update(Sample sample) {
+            if (!initialized) {
+                initialized = true;
+                lastX = sample.x;
+                lastZ = sample.z;
+                lastNanos = sample.nanos;
+                return false;
+            }
+
+            double seconds = (sample.nanos - lastNanos) / 1_000_000_000.0;
+            if (seconds <= 0) {
+                return false;
+            }
+
+            double vx = (sample.x - lastX) / seconds;
+            double vz = (sample.z - lastZ) / seconds;
+            velocityX = velocityX * 0.5 + vx * 0.5;
+            velocityZ = velocityZ * 0.5 + vz * 0.5;
+
+            lastX = sample.x;
+            lastZ = sample.z;
+            lastNanos = sample.nanos;
+            return true;
+        }
+
+        double speed() {
+            return Math.sqrt(velocityX * velocityX + velocityZ * velocityZ);
+        }
+    }
+}
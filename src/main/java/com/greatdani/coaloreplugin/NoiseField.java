@@ -0,0 +1,360 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.Locale;
+
+/**
+ * An ore placed as one seeded 3D gradient noise over the world instead of as
+ * veins: every cell of its Y range where the noise is above the threshold is a
+ * candidate, so neighbouring chunks continue each other's pockets without any
+ * spill. The noise is evaluated in world coordinates from the world seed and
+ * the ore's key, so a chunk's cells don't depend on which chunks came first.
+ * <p>
+ * Like terrain noise, it is sampled on a coarse grid (every 4 blocks across,
+ * every 2 up) and blended in between. A chunk is one 9x9 layer of samples per
+ * grid level, evaluated as flat arrays; a grid cell whose eight samples are all
+ * below the threshold can't have a blended value above it, so it is skipped
+ * without looking at its blocks. The cost is then set by the height of the Y
+ * range, not by luck. Layers run on the {@code jdk.incubator.vector} API when
+ * the server is started with {@code --add-modules jdk.incubator.vector}, and on
+ * plain loops otherwise; both do the same float operations in the same order,
+ * so the layout is the same either way.
+ */
+final class NoiseField {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    // Blocks between samples
+    static final int STEP_XZ = 4;
+    static final int STEP_Y = 2;
+
+    // Samples per side of a chunk, both edges included
+    static final int SIDE = CoalOreConfig.CHUNK_SIZE / STEP_XZ + 1;
+    static final int SAMPLES = SIDE * SIDE;
+
+    // Layer arrays are padded so any vector length up to 16 divides them
+    static final int LANES = (SAMPLES + 15) & ~15;
+
+    // Corner hash: seed ^ x * PRIME_X ^ y * PRIME_Y ^ z * PRIME_Z, then mixed
+    static final int PRIME_X = 0x27D4EB2F;
+    static final int PRIME_Y = 0x165667B1;
+    static final int PRIME_Z = 0x9E3779B1;
+
+    // Gradient components are three 10-bit fields of the corner hash, mapped to -1..1
+    static final float GRADIENT_SCALE = 2f / 1023f;
+
+    private static final Layers LAYERS = pickLayers();
+
+    final int scale;
+    final int verticalScale;
+    final float threshold;
+
+    private NoiseField(int scale, int verticalScale, float threshold) {
+        this.scale = scale;
+        this.verticalScale = verticalScale;
+        this.threshold = threshold;
+    }
+
+    /**
+     * The field for an ore whose PlacementMode is {@code mode}, or null when it is placed as veins.
+     */
+    static NoiseField compile(String mode, NoiseSettings settings, String oreName) {
+        String name = mode == null ? "" : mode.trim().toLowerCase(Locale.ROOT);
+        switch (name) {
+            case "", "veins" -> {
+                return null;
+            }
+            case "noisefield" -> {
+                NoiseSettings s = settings != null ? settings : new NoiseSettings();
+                return new NoiseField(s.getScale(), s.getVerticalScale(), (float) s.getThreshold());
+            }
+            default -> {
+                LOGGER.atWarning().log("Unknown placement mode '%s' for %s, using Veins", mode, oreName);
+                return null;
+            }
+        }
+    }
+
+    // For GenerationPlan's fingerprint
+    long hash() {
+        return ((long) scale << 48) ^ ((long) verticalScale << 32) ^ (Float.floatToIntBits(threshold) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Which layer implementation is in use, for the startup log.
+     */
+    static String engine() {
+        return LAYERS.describe();
+    }
+
+    /**
+     * Records the field's cells in the chunk between {@code minY} and {@code maxY}
+     * as a single {@link ChunkVeinPlan#FIELD} vein.
+     */
+    void plan(ChunkVeinPlan.Builder out, long worldSeed, long oreKey, int chunkX, int chunkZ,
+              int minY, int maxY, int oreIndex) {
+        plan(out, LAYERS, worldSeed, oreKey, chunkX, chunkZ, minY, maxY, oreIndex);
+    }
+
+    void plan(ChunkVeinPlan.Builder out, Layers layers, long worldSeed, long oreKey, int chunkX, int chunkZ,
+              int minY, int maxY, int oreIndex) {
+        int lo = Math.max(CoalOreConfig.WORLD_MIN_Y, minY);
+        int hi = Math.min(CoalOreConfig.WORLD_MAX_Y, maxY);
+        int seed = OreSeeds.fieldSeed(worldSeed, oreKey);
+        Slab s = Slab.acquire(this, chunkX, chunkZ, seed);
+
+        out.beginVein(oreIndex, Integer.MAX_VALUE, ChunkVeinPlan.FIELD);
+        // Levels sit on even Y in world terms, so changing MinY doesn't shift the field
+        int levelY = Math.floorDiv(lo, STEP_Y) * STEP_Y;
+        Level below = s.levelA;
+        Level above = s.levelB;
+        sampleLevel(s, layers, levelY, below);
+        for (; levelY <= hi; levelY += STEP_Y) {
+            sampleLevel(s, layers, levelY + STEP_Y, above);
+            addCells(out, below, above, levelY, Math.max(lo, levelY), Math.min(hi, levelY + STEP_Y - 1));
+            Level t = below;
+            below = above;
+            above = t;
+        }
+        out.endVein();
+    }
+
+    private void sampleLevel(Slab s, Layers layers, int y, Level out) {
+        int iy = Math.floorDiv(y, verticalScale);
+        // Gradients only change when the level moves into another lattice cell
+        if (!s.hasGradients || s.gradientsY != iy) {
+            layers.gradients(s, s.seed ^ iy * PRIME_Y, s.seed ^ (iy + 1) * PRIME_Y);
+            s.gradientsY = iy;
+            s.hasGradients = true;
+        }
+        float ty = Math.floorMod(y, verticalScale) / (float) verticalScale;
+        layers.level(s, ty, ty - 1f, fade(ty), out.noise);
+
+        for (int row = 0; row < SIDE; row++) {
+            int bits = 0;
+            for (int x = 0; x < SIDE; x++) {
+                if (out.noise[row * SIDE + x] > threshold) {
+                    bits |= 1 << x;
+                }
+            }
+            out.above[row] = bits;
+        }
+    }
+
+    // Blends the grid cells between two levels; fromY..toY is the part of the level that's in range
+    private void addCells(ChunkVeinPlan.Builder out, Level lower, Level upper, int levelY, int fromY, int toY) {
+        float[] below = lower.noise;
+        float[] above = upper.noise;
+        for (int cz = 0; cz < SIDE - 1; cz++) {
+            // A cell with no sample above the threshold has no block above it either
+            int hot = lower.above[cz] | lower.above[cz + 1] | upper.above[cz] | upper.above[cz + 1];
+            int cells = (hot | hot >>> 1) & ((1 << (SIDE - 1)) - 1);
+            while (cells != 0) {
+                int cx = Integer.numberOfTrailingZeros(cells);
+                cells &= cells - 1;
+
+                int i = cz * SIDE + cx;
+                float b00 = below[i];
+                float b10 = below[i + 1];
+                float b01 = below[i + SIDE];
+                float b11 = below[i + SIDE + 1];
+                float a00 = above[i];
+                float a10 = above[i + 1];
+                float a01 = above[i + SIDE];
+                float a11 = above[i + SIDE + 1];
+
+                for (int y = fromY; y <= toY; y++) {
+                    float fy = (y - levelY) * (1f / STEP_Y);
+                    float c00 = b00 + (a00 - b00) * fy;
+                    float c10 = b10 + (a10 - b10) * fy;
+                    float c01 = b01 + (a01 - b01) * fy;
+                    float c11 = b11 + (a11 - b11) * fy;
+                    for (int dz = 0; dz < STEP_XZ; dz++) {
+                        float fz = dz * (1f / STEP_XZ);
+                        float c0 = c00 + (c01 - c00) * fz;
+                        float c1 = c10 + (c11 - c10) * fz;
+                        for (int dx = 0; dx < STEP_XZ; dx++) {
+                            if (c0 + (c1 - c0) * (dx * (1f / STEP_XZ)) > threshold) {
+                                out.add(PlacementBuffer.pack(cx * STEP_XZ + dx, y, cz * STEP_XZ + dz));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    static float fade(float t) {
+        return t * t * t * (t * (t * 6f - 15f) + 10f);
+    }
+
+    // lowbias32 finalizer
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        h *= 0x846CA68B;
+        return h ^ (h >>> 16);
+    }
+
+    private static Layers pickLayers() {
+        Layers layers = vectorLayers();
+        return layers != null ? layers : Layers.SCALAR;
+    }
+
+    /**
+     * The Vector API layers, or null when the JVM runs without the module or the
+     * preferred vector doesn't fit a layer.
+     */
+    static Layers vectorLayers() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            // Compiled on its own with the incubator module, so only reachable by name
+            return (Layers) Class.forName(NoiseField.class.getPackageName() + ".NoiseFieldVectors")
+                    .getDeclaredMethod("create")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Present but not readable from the plugin's class loader
+            LOGGER.atWarning().log("Vector API unavailable, noise fields use scalar loops: %s", e);
+            return null;
+        }
+    }
+
+    /**
+     * Per-thread working set for one chunk: where each sample of a layer sits in
+     * the noise lattice across X and Z, and two layers of samples.
+     */
+    static final class Slab {
+        private static final ThreadLocal<Slab> LOCAL = ThreadLocal.withInitial(Slab::new);
+
+        // [dx | dz << 1][sample]: the X/Z part of the hash of each lattice corner around the sample
+        final int[][] corners = new int[4][LANES];
+
+        // Offsets from the lower/upper lattice corner and fade weights, per sample
+        final float[] tx0 = new float[LANES];
+        final float[] tx1 = new float[LANES];
+        final float[] tz0 = new float[LANES];
+        final float[] tz1 = new float[LANES];
+        final float[] fadeX = new float[LANES];
+        final float[] fadeZ = new float[LANES];
+
+        // [corner * 3 + axis][sample] for the current lattice Y cell, corner = dx | dy << 1 | dz << 2
+        final float[][] gradients = new float[24][LANES];
+        int gradientsY;
+        boolean hasGradients;
+
+        final Level levelA = new Level();
+        final Level levelB = new Level();
+
+        int seed;
+
+        static Slab acquire(NoiseField field, int chunkX, int chunkZ, int seed) {
+            Slab s = LOCAL.get();
+            int baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+            int baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+            for (int i = 0; i < SAMPLES; i++) {
+                int x = baseX + (i % SIDE) * STEP_XZ;
+                int z = baseZ + (i / SIDE) * STEP_XZ;
+                int ix = Math.floorDiv(x, field.scale);
+                int iz = Math.floorDiv(z, field.scale);
+                float tx = Math.floorMod(x, field.scale) / (float) field.scale;
+                float tz = Math.floorMod(z, field.scale) / (float) field.scale;
+
+                for (int c = 0; c < 4; c++) {
+                    s.corners[c][i] = (ix + (c & 1)) * PRIME_X ^ (iz + (c >> 1)) * PRIME_Z;
+                }
+                s.tx0[i] = tx;
+                s.tx1[i] = tx - 1f;
+                s.tz0[i] = tz;
+                s.tz1[i] = tz - 1f;
+                s.fadeX[i] = fade(tx);
+                s.fadeZ[i] = fade(tz);
+            }
+            s.seed = seed;
+            s.hasGradients = false;
+            return s;
+        }
+    }
+
+    // One level of samples, and per row of samples a bit per sample above the threshold
+    static final class Level {
+        final float[] noise = new float[LANES];
+        final int[] above = new int[SIDE];
+    }
+
+    /**
+     * The two inner loops over a layer of samples. Implementations must use the
+     * same float operations in the same order as {@link #SCALAR} so layouts don't
+     * depend on the JVM flags; lanes past {@link #SAMPLES} may hold anything.
+     */
+    abstract static class Layers {
+
+        static final Layers SCALAR = new Layers() {
+            @Override
+            void gradients(Slab s, int hy0, int hy1) {
+                for (int corner = 0; corner < 8; corner++) {
+                    int hy = (corner & 2) == 0 ? hy0 : hy1;
+                    int[] hxz = s.corners[(corner & 1) | (corner >> 1 & 2)];
+                    float[] gx = s.gradients[corner * 3];
+                    float[] gy = s.gradients[corner * 3 + 1];
+                    float[] gz = s.gradients[corner * 3 + 2];
+                    for (int i = 0; i < SAMPLES; i++) {
+                        int h = mix(hy ^ hxz[i]);
+                        gx[i] = (h & 1023) * GRADIENT_SCALE - 1f;
+                        gy[i] = (h >>> 10 & 1023) * GRADIENT_SCALE - 1f;
+                        gz[i] = (h >>> 20 & 1023) * GRADIENT_SCALE - 1f;
+                    }
+                }
+            }
+
+            @Override
+            void level(Slab s, float ty0, float ty1, float v, float[] out) {
+                float[][] g = s.gradients;
+                for (int i = 0; i < SAMPLES; i++) {
+                    float tx0 = s.tx0[i];
+                    float tx1 = s.tx1[i];
+                    float tz0 = s.tz0[i];
+                    float tz1 = s.tz1[i];
+                    float c000 = g[0][i] * tx0 + g[1][i] * ty0 + g[2][i] * tz0;
+                    float c100 = g[3][i] * tx1 + g[4][i] * ty0 + g[5][i] * tz0;
+                    float c010 = g[6][i] * tx0 + g[7][i] * ty1 + g[8][i] * tz0;
+                    float c110 = g[9][i] * tx1 + g[10][i] * ty1 + g[11][i] * tz0;
+                    float c001 = g[12][i] * tx0 + g[13][i] * ty0 + g[14][i] * tz1;
+                    float c101 = g[15][i] * tx1 + g[16][i] * ty0 + g[17][i] * tz1;
+                    float c011 = g[18][i] * tx0 + g[19][i] * ty1 + g[20][i] * tz1;
+                    float c111 = g[21][i] * tx1 + g[22][i] * ty1 + g[23][i] * tz1;
+
+                    float u = s.fadeX[i];
+                    float a = c000 + (c100 - c000) * u;
+                    float b = c010 + (c110 - c010) * u;
+                    float c = c001 + (c101 - c001) * u;
+                    float d = c011 + (c111 - c011) * u;
+                    float e = a + (b - a) * v;
+                    float f = c + (d - c) * v;
+                    out[i] = e + (f - e) * s.fadeZ[i];
+                }
+            }
+
+            @Override
+            String describe() {
+                return "scalar";
+            }
+        };
+
+        /**
+         * Fills {@link Slab#gradients} for the lattice Y cell whose lower and
+         * upper hash terms are {@code hy0} and {@code hy1}.
+         */
+        abstract void gradients(Slab s, int hy0, int hy1);
+
+        /**
+         * Noise at every sample of one level, {@code ty0}/{@code ty1} being the
+         * offsets to the lattice cell's Y corners and {@code v} the Y fade weight.
+         */
+        abstract void level(Slab s, float ty0, float ty1, float v, float[] out);
+
+        abstract String describe();
+    }
+}
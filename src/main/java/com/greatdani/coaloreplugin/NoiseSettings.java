@@ -0,0 +1,52 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.codec.Codec;
+import com.hypixel.hytale.codec.KeyedCodec;
+import com.hypixel.hytale.codec.builder.BuilderCodec;
+
+/**
+ * Settings for {@code PlacementMode: "NoiseField"}: ore goes wherever a seeded
+ * 3D noise over the ore's Y range is above Threshold. Compiled into a
+ * {@link NoiseField} when the plan is built.
+ * <p>
+ * Scale is the horizontal feature size in blocks, VerticalScale the vertical
+ * one; a smaller VerticalScale flattens the pockets into seams.
+ */
+public class NoiseSettings {
+    public static final BuilderCodec<NoiseSettings> CODEC =
+            BuilderCodec.builder(NoiseSettings.class, NoiseSettings::new)
+                    .append(new KeyedCodec<Integer>("Scale", Codec.INTEGER),
+                            (n, val, info) -> n.scale = val,
+                            (n, info) -> n.scale)
+                    .add()
+                    .append(new KeyedCodec<Integer>("VerticalScale", Codec.INTEGER),
+                            (n, val, info) -> n.verticalScale = val,
+                            (n, info) -> n.verticalScale)
+                    .add()
+                    .append(new KeyedCodec<Double>("Threshold", Codec.DOUBLE),
+                            (n, val, info) -> n.threshold = val,
+                            (n, info) -> n.threshold)
+                    .add()
+                    .build();
+
+    private int scale = 24;
+    private int verticalScale = 8;
+
+    // Noise is roughly -1..1; higher = less ore
+    private double threshold = 0.5;
+
+    public NoiseSettings() {
+    }
+
+    public int getScale() {
+        return Math.max(8, Math.min(256, scale));
+    }
+
+    public int getVerticalScale() {
+        return Math.max(4, Math.min(256, verticalScale));
+    }
+
+    public double getThreshold() {
+        return Math.max(-1, Math.min(1, threshold));
+    }
+}
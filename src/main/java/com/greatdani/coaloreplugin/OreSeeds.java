@@ -0,0 +1,67 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives independent random streams for ore generation from
+ * (world seed, chunk, ore, vein). Each vein can be reproduced on its own, in
+ * any order and on any thread, and adding or reordering ores in the config
+ * leaves every other ore's layout untouched.
+ */
+final class OreSeeds {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private OreSeeds() {
+    }
+
+    static long chunkSeed(long worldSeed, int chunkX, int chunkZ) {
+        long position = ((long) chunkX << 32) ^ (chunkZ & 0xFFFFFFFFL);
+        return mix64(worldSeed ^ mix64(position + GOLDEN_GAMMA));
+    }
+
+    /**
+     * Stable key for an ore, taken from its name rather than its position in the config.
+     */
+    static long oreKey(String name, int occurrence) {
+        // FNV-1a
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix64(hash + occurrence * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Per-chunk stream for one ore: spawn roll and vein count.
+     */
+    static SplittableRandom oreStream(long chunkSeed, long oreKey) {
+        return new SplittableRandom(oreSeed(chunkSeed, oreKey));
+    }
+
+    /**
+     * Stream for a single vein: origin, size and shape.
+     */
+    static SplittableRandom veinStream(long chunkSeed, long oreKey, int vein) {
+        return new SplittableRandom(mix64(oreSeed(chunkSeed, oreKey) ^ ((vein + 1L) * GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Seed for an ore's {@link NoiseField}; the same for the whole world, so the field runs on across chunks.
+     */
+    static int fieldSeed(long worldSeed, long oreKey) {
+        return (int) mix64(worldSeed ^ mix64(oreKey + GOLDEN_GAMMA));
+    }
+
+    private static long oreSeed(long chunkSeed, long oreKey) {
+        return mix64(chunkSeed + oreKey * GOLDEN_GAMMA);
+    }
+
+    // SplitMix64 finalizer
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,326 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Vein cells that fell into a neighbouring chunk which hadn't generated yet,
+ * kept until that chunk's pre-load event so veins carry on across chunk borders.
+ * Cells are packed longs grouped per target chunk; the oldest chunks are dropped
+ * once the total passes the limit. Saved to a small file on shutdown.
+ * <p>
+ * Cell layout: {@code (oreIndex + 1) << 32 | packedPosition}, coal's -1 stored as 0.
+ * Ore indices refer to the {@link BlockCache.BlockCaches#oreNames()} of the cache the
+ * cell came from and are mapped by name if the ore table changed since.
+ */
+final class PendingPlacements {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final int MAGIC = 0x43504E44;  // "CPND"
+    private static final int VERSION = 2;
+    // Version 1 didn't say which world an entry belongs to
+    private static final int VERSION_NO_WORLD = 1;
+    private static final long UNKNOWN_WORLD = 0L;
+
+    private final int maxCells;
+    private final GenerationMetrics metrics;
+
+    // Insertion order, oldest first, for eviction
+    private final LinkedHashMap<Long, Entry> byChunk = new LinkedHashMap<>();
+    private long cells;
+
+    PendingPlacements(int maxCells, GenerationMetrics metrics) {
+        this.maxCells = maxCells;
+        this.metrics = metrics;
+    }
+
+    // worldKey salts the chunk index per world, see WorldGenContext.storeKey
+    static long key(long worldKey, int chunkX, int chunkZ) {
+        return ChunkUtil.indexChunk(chunkX, chunkZ) ^ worldKey;
+    }
+
+    static long cell(int oreIndex, int packed) {
+        return ((long) (oreIndex + 1) << 32) | packed;
+    }
+
+    synchronized long size() {
+        return cells;
+    }
+
+    /**
+     * Stores everything {@code batch} collected for the neighbours of chunk
+     * ({@code chunkX}, {@code chunkZ}). Neighbours for which {@code generated}
+     * says yes won't see another pre-load, so their cells are dropped.
+     */
+    void addAll(long worldKey, int chunkX, int chunkZ, Batch batch, String[] oreNames,
+                NeighbourCheck generated) {
+        for (int slot = 0; slot < Batch.SLOTS; slot++) {
+            int count = batch.sizes[slot];
+            if (count == 0) continue;
+
+            int neighbourX = chunkX + slot % 3 - 1;
+            int neighbourZ = chunkZ + slot / 3 - 1;
+            if (generated.isGenerated(neighbourX, neighbourZ)) {
+                metrics.pendingSkipped.add(count);
+                continue;
+            }
+            add(worldKey, key(worldKey, neighbourX, neighbourZ), oreNames, batch.cells[slot], count);
+        }
+    }
+
+    synchronized void add(long worldKey, long key, String[] oreNames, long[] newCells, int count) {
+        Entry entry = byChunk.get(key);
+        if (entry == null) {
+            entry = new Entry(worldKey, oreNames, new long[Math.max(16, count)], 0);
+            byChunk.put(key, entry);
+        } else if (entry.oreNames != oreNames) {
+            // Ore table changed since these were stored; bring them over by name
+            entry.remap(oreNames);
+        }
+        cells -= entry.size;
+        entry.append(newCells, count);
+        cells += entry.size;
+        metrics.pendingStored.add(count);
+
+        Iterator<Entry> oldest = byChunk.values().iterator();
+        while (cells > maxCells && oldest.hasNext()) {
+            Entry evicted = oldest.next();
+            oldest.remove();
+            cells -= evicted.size;
+            metrics.pendingExpired.add(evicted.size);
+        }
+        metrics.pendingCells.set(cells);
+    }
+
+    /**
+     * Queues every stored cell for a chunk that is generating now and forgets them.
+     *
+     * @return number of cells queued
+     */
+    int applyTo(long worldKey, BlockAccess blocks, int chunkX, int chunkZ, BlockCache.BlockCaches cache,
+                PlacementBuffer buffer) {
+        Entry entry;
+        synchronized (this) {
+            entry = byChunk.remove(key(worldKey, chunkX, chunkZ));
+            if (entry == null) {
+                return 0;
+            }
+            cells -= entry.size;
+            metrics.pendingCells.set(cells);
+        }
+
+        if (entry.oreNames != cache.oreNames()) {
+            entry.remap(cache.oreNames());
+        }
+
+        int chunkBlockX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int chunkBlockZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        int queued = 0;
+        for (int i = 0; i < entry.size; i++) {
+            long cell = entry.cells[i];
+            int oreIndex = (int) (cell >>> 32) - 1;
+            BlockCache.OreType ore = oreIndex >= 0 ? cache.getOre(oreIndex) : null;
+            if (VeinApplier.tryPlaceOre(blocks, chunkBlockX, chunkBlockZ, cache, buffer, (int) cell, ore)) {
+                queued++;
+            }
+        }
+        metrics.pendingApplied.add(entry.size);
+        return queued;
+    }
+
+    /**
+     * Drops the cells of the world with {@code worldKey}, e.g. when the world is removed.
+     * Cells loaded from a version 1 file don't say their world and stay.
+     */
+    synchronized void forget(long worldKey) {
+        Iterator<Entry> entries = byChunk.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.worldKey == worldKey) {
+                entries.remove();
+                cells -= entry.size;
+                metrics.pendingExpired.add(entry.size);
+            }
+        }
+        metrics.pendingCells.set(cells);
+    }
+
+    /**
+     * Writes all pending cells to {@code file} (through a temp file, so a crash
+     * mid-write keeps the previous one).
+     */
+    void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        synchronized (this) {
+            // Entries share name arrays; write each distinct one once
+            Map<String[], Integer> tables = new IdentityHashMap<>();
+            for (Entry entry : byChunk.values()) {
+                tables.putIfAbsent(entry.oreNames, tables.size());
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                String[][] byId = new String[tables.size()][];
+                tables.forEach((names, id) -> byId[id] = names);
+                out.writeInt(byId.length);
+                for (String[] names : byId) {
+                    out.writeInt(names.length);
+                    for (String name : names) {
+                        out.writeUTF(name);
+                    }
+                }
+
+                out.writeInt(byChunk.size());
+                for (Map.Entry<Long, Entry> e : byChunk.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeLong(e.getKey());
+                    out.writeLong(entry.worldKey);
+                    out.writeInt(tables.get(entry.oreNames));
+                    out.writeInt(entry.size);
+                    for (int i = 0; i < entry.size; i++) {
+                        out.writeLong(entry.cells[i]);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the cells saved in {@code file}, if it exists. A file that can't be read is logged and ignored.
+     */
+    void load(Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_NO_WORLD) {
+                LOGGER.atWarning().log("Ignoring %s: unknown format", file.getFileName());
+                return;
+            }
+
+            String[][] tables = new String[in.readInt()][];
+            for (int t = 0; t < tables.length; t++) {
+                tables[t] = new String[in.readInt()];
+                for (int i = 0; i < tables[t].length; i++) {
+                    tables[t][i] = in.readUTF();
+                }
+            }
+
+            int chunks = in.readInt();
+            long loaded = 0;
+            for (int c = 0; c < chunks; c++) {
+                long key = in.readLong();
+                long worldKey = version == VERSION_NO_WORLD ? UNKNOWN_WORLD : in.readLong();
+                String[] names = tables[in.readInt()];
+                long[] saved = new long[in.readInt()];
+                for (int i = 0; i < saved.length; i++) {
+                    saved[i] = in.readLong();
+                }
+                add(worldKey, key, names, saved, saved.length);
+                loaded += saved.length;
+            }
+            LOGGER.atInfo().log("Loaded %d pending vein cells for %d chunks", loaded, chunks);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.atWarning().log("Failed to read %s: %s", file.getFileName(), e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    interface NeighbourCheck {
+        boolean isGenerated(int chunkX, int chunkZ);
+    }
+
+    private static final class Entry {
+        // The world's WorldGenContext.storeKey
+        final long worldKey;
+        String[] oreNames;
+        long[] cells;
+        int size;
+
+        Entry(long worldKey, String[] oreNames, long[] cells, int size) {
+            this.worldKey = worldKey;
+            this.oreNames = oreNames;
+            this.cells = cells;
+            this.size = size;
+        }
+
+        void append(long[] more, int count) {
+            if (size + count > cells.length) {
+                cells = Arrays.copyOf(cells, Math.max(cells.length * 2, size + count));
+            }
+            System.arraycopy(more, 0, cells, size, count);
+            size += count;
+        }
+
+        // Cells of ores that no longer exist are dropped; coal cells stay as they are
+        void remap(String[] newNames) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < newNames.length; i++) {
+                index.putIfAbsent(newNames[i], i);
+            }
+
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                long cell = cells[i];
+                int oreIndex = (int) (cell >>> 32) - 1;
+                if (oreIndex >= 0) {
+                    Integer mapped = oreIndex < oreNames.length ? index.get(oreNames[oreIndex]) : null;
+                    if (mapped == null) continue;
+                    cell = cell((int) mapped, (int) cell);
+                }
+                cells[kept++] = cell;
+            }
+            size = kept;
+            oreNames = newNames;
+        }
+    }
+
+    /**
+     * One chunk's spill, sorted into its eight neighbours while the veins are
+     * applied. One instance per thread, reused.
+     */
+    static final class Batch {
+        // 3x3 around the chunk; the middle slot stays empty
+        static final int SLOTS = 9;
+
+        private static final ThreadLocal<Batch> LOCAL = ThreadLocal.withInitial(Batch::new);
+
+        private final long[][] cells = new long[SLOTS][64];
+        private final int[] sizes = new int[SLOTS];
+
+        private Batch() {
+        }
+
+        static Batch acquire() {
+            Batch batch = LOCAL.get();
+            Arrays.fill(batch.sizes, 0);
+            return batch;
+        }
+
+        void add(int dx, int dz, int oreIndex, int packed) {
+            int slot = (dz + 1) * 3 + dx + 1;
+            if (sizes[slot] == cells[slot].length) {
+                cells[slot] = Arrays.copyOf(cells[slot], sizes[slot] * 2);
+            }
+            cells[slot][sizes[slot]++] = cell(oreIndex, packed);
+        }
+
+        int total() {
+            int total = 0;
+            for (int size : sizes) {
+                total += size;
+            }
+            return total;
+        }
+    }
+}
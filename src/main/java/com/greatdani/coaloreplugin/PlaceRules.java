@@ -0,0 +1,180 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Where one ore may spawn (its AllowedZones/AllowedBiomes) and which of its
+ * {@link ZoneProfile}s applies, per zone/biome pair. Patterns are matched once
+ * per pair into an array indexed by {@link ZoneBiomeResolver.ZoneBiome#placeId}:
+ * the pairs already known when the plan is compiled up front, pairs first seen
+ * later when a chunk first asks for them. After that a chunk costs one read.
+ */
+final class PlaceRules {
+
+    // Entries of the table: not allowed here, the ore's own settings, or profile n at n + 1
+    static final int BLOCKED = -1;
+    static final int BASE = 0;
+
+    // Null = matches everything
+    private final String[] allowedZones;
+    private final String[] allowedBiomes;
+    private final String[][] profileZones;
+    private final String[][] profileBiomes;
+    private final GenerationPlan.OrePass[] variants;
+
+    private volatile int[] byPlace = new int[0];
+
+    private PlaceRules(String[] allowedZones, String[] allowedBiomes, String[][] profileZones, String[][] profileBiomes,
+                       GenerationPlan.OrePass[] variants) {
+        this.allowedZones = allowedZones;
+        this.allowedBiomes = allowedBiomes;
+        this.profileZones = profileZones;
+        this.profileBiomes = profileBiomes;
+        this.variants = variants;
+        grow(ZoneBiomeResolver.PLACES.size() - 1);
+    }
+
+    /**
+     * Null when the ore spawns everywhere with its own settings.
+     *
+     * @param variants the ore's settings under each profile, in the same order
+     */
+    static PlaceRules compile(List<String> allowedZones, List<String> allowedBiomes, List<ZoneProfile> profiles,
+                              List<GenerationPlan.OrePass> variants) {
+        if (allowedZones.isEmpty() && allowedBiomes.isEmpty() && profiles.isEmpty()) {
+            return null;
+        }
+
+        String[][] zones = new String[profiles.size()][];
+        String[][] biomes = new String[profiles.size()][];
+        for (int i = 0; i < profiles.size(); i++) {
+            zones[i] = patterns(profiles.get(i).getZones());
+            biomes[i] = patterns(profiles.get(i).getBiomes());
+        }
+        return new PlaceRules(patterns(allowedZones), patterns(allowedBiomes), zones, biomes,
+                variants.toArray(new GenerationPlan.OrePass[0]));
+    }
+
+    private static String[] patterns(List<String> names) {
+        return names.isEmpty() ? null : new LinkedHashSet<>(names).toArray(new String[0]);
+    }
+
+    boolean hasProfiles() {
+        return variants.length > 0;
+    }
+
+    /**
+     * Table entry for a chunk's zone/biome: {@link #BLOCKED}, {@link #BASE} or a profile.
+     */
+    int select(ZoneBiomeResolver.ZoneBiome place) {
+        int[] table = byPlace;
+        int id = place.placeId;
+        return id < table.length ? table[id] : grow(id);
+    }
+
+    GenerationPlan.OrePass variant(int entry) {
+        return variants[entry - 1];
+    }
+
+    // Pairs are only ever added, so entries already in the table stay valid
+    private synchronized int grow(int id) {
+        int[] table = byPlace;
+        if (id >= table.length) {
+            int[] grown = Arrays.copyOf(table, Math.max(id + 1, ZoneBiomeResolver.PLACES.size()));
+            for (int place = table.length; place < grown.length; place++) {
+                grown[place] = evaluate(ZoneBiomeResolver.ZONES.nameOf(ZoneBiomeResolver.PLACES.zoneOf(place)),
+                        ZoneBiomeResolver.BIOMES.nameOf(ZoneBiomeResolver.PLACES.biomeOf(place)));
+            }
+            byPlace = grown;
+            table = grown;
+        }
+        return id >= 0 ? table[id] : BASE;
+    }
+
+    private int evaluate(String zone, String biome) {
+        if (!matchesAny(allowedZones, zone) || !matchesAny(allowedBiomes, biome)) {
+            return BLOCKED;
+        }
+        for (int i = 0; i < variants.length; i++) {
+            if (matchesAny(profileZones[i], zone) && matchesAny(profileBiomes[i], biome)) {
+                return i + 1;
+            }
+        }
+        return BASE;
+    }
+
+    private static boolean matchesAny(String[] patterns, String name) {
+        if (patterns == null) {
+            return true;
+        }
+        for (String pattern : patterns) {
+            if (matches(pattern, name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Glob match where {@code *} stands for any run of characters, including none.
+     */
+    static boolean matches(String pattern, String name) {
+        int p = 0;
+        int n = 0;
+        int star = -1;
+        int resume = 0;
+        while (n < name.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                resume = n;
+            } else if (p < pattern.length() && pattern.charAt(p) == name.charAt(n)) {
+                p++;
+                n++;
+            } else if (star >= 0) {
+                // Let the last star swallow one more character and retry from there
+                p = star + 1;
+                n = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    /**
+     * Order-independent hash of the allow-list patterns, 0 for unrestricted.
+     */
+    long zonesHash() {
+        return names(allowedZones);
+    }
+
+    long biomesHash() {
+        return names(allowedBiomes);
+    }
+
+    /**
+     * Hash of the profiles' patterns and settings, in order.
+     */
+    long profilesHash(long h) {
+        for (int i = 0; i < variants.length; i++) {
+            h = OreSeeds.mix64(h ^ names(profileZones[i]));
+            h = OreSeeds.mix64(h ^ names(profileBiomes[i]) * 31);
+            h = variants[i].fingerprint(h);
+        }
+        return h;
+    }
+
+    private static long names(String[] patterns) {
+        if (patterns == null) {
+            return 0;
+        }
+        long h = 1;
+        for (String pattern : patterns) {
+            h += OreSeeds.mix64(pattern.hashCode());
+        }
+        return h;
+    }
+}
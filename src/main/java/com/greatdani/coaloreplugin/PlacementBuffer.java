@@ -0,0 +1,186 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.Arrays;
+
+/**
+ * Collects every ore placement for one chunk before anything is written.
+ * Positions are packed chunk-local coordinates, deduplicated on insert and
+ * applied sorted by Y, so each chunk section is written in one contiguous run.
+ * One instance per thread, reused across chunks.
+ */
+final class PlacementBuffer {
+
+    // Flags passed to setBlock for natural placement; pre-load chunks have no neighbours to notify
+    static final int SET_BLOCK_SETTINGS = 4;
+
+    private static final ThreadLocal<PlacementBuffer> LOCAL = ThreadLocal.withInitial(PlacementBuffer::new);
+
+    private static final int EMPTY = -1;
+
+    // Open-addressing set of packed positions, used for dedupe
+    private int[] slots = new int[1024];
+    private int mask = slots.length - 1;
+
+    // (packed position << 32) | ore index, in insertion order until flush sorts it
+    private long[] entries = new long[256];
+    private int size;
+
+    // Per-ore write counts of the last flush, indexed by OreType.index
+    private int[] oreCounts = new int[16];
+
+    // What the last flush wrote, for the GenerationLedger
+    private long layoutHash;
+
+    private PlacementBuffer() {
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Returns this thread's buffer, emptied.
+     */
+    static PlacementBuffer acquire() {
+        PlacementBuffer buffer = LOCAL.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    static int pack(int localX, int y, int localZ) {
+        return (y << (2 * CoalOreConfig.CHUNK_SHIFT)) | (localZ << CoalOreConfig.CHUNK_SHIFT) | localX;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isClaimed(int localX, int y, int localZ) {
+        int packed = pack(localX, y, localZ);
+        for (int i = mix(packed) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == EMPTY) return false;
+            if (slot == packed) return true;
+        }
+    }
+
+    /**
+     * Queues an ore for a chunk-local position. The first claim on a cell wins.
+     */
+    boolean add(int localX, int y, int localZ, int oreIndex) {
+        int packed = pack(localX, y, localZ);
+        int i = mix(packed) & mask;
+        for (; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == EMPTY) break;
+            if (slot == packed) return false;
+        }
+
+        slots[i] = packed;
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = ((long) packed << 32) | oreIndex;
+
+        // Keep the set at most half full
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Writes all queued ores to the chunk, one section at a time, and empties the buffer.
+     *
+     * @return number of blocks written
+     */
+    int flush(BlockAccess blocks, int chunkX, int chunkZ, BlockCache.BlockCaches cache) {
+        return flush(blocks, chunkX, chunkZ, cache, null);
+    }
+
+    /**
+     * Same as {@link #flush(BlockAccess, int, int, BlockCache.BlockCaches)}, also
+     * adding the blocks written per ore to {@code metrics} when it isn't null.
+     */
+    int flush(BlockAccess blocks, int chunkX, int chunkZ, BlockCache.BlockCaches cache, GenerationMetrics metrics) {
+        layoutHash = 0;
+        if (oreCounts.length < cache.oreCount()) {
+            oreCounts = new int[cache.oreCount()];
+        }
+        Arrays.fill(oreCounts, 0);
+        if (size == 0) {
+            return 0;
+        }
+
+        // Packed positions start with Y, so sorting groups entries by section
+        Arrays.sort(entries, 0, size);
+
+        int chunkBlockX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int chunkBlockZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        int written = 0;
+        long hash = 0;
+
+        for (int i = 0; i < size; i++) {
+            long entry = entries[i];
+            int packed = (int) (entry >>> 32);
+
+            int x = chunkBlockX + (packed & CoalOreConfig.CHUNK_MASK);
+            int z = chunkBlockZ + ((packed >> CoalOreConfig.CHUNK_SHIFT) & CoalOreConfig.CHUNK_MASK);
+            int y = packed >> (2 * CoalOreConfig.CHUNK_SHIFT);
+
+            if (blocks.setBlock(x, y, z, cache.getOre((int) entry))) {
+                written++;
+                oreCounts[(int) entry]++;
+                // Entries are sorted, so the same layout always hashes the same
+                hash = OreSeeds.mix64(hash ^ entry);
+            }
+        }
+
+        for (int ore = 0; ore < cache.oreCount(); ore++) {
+            if (oreCounts[ore] > 0 && metrics != null) {
+                metrics.recordBlocks(cache.getOre(ore).name, oreCounts[ore]);
+            }
+        }
+        layoutHash = hash;
+
+        clear();
+        return written;
+    }
+
+    /**
+     * Hash of every block the last flush wrote (position and ore), 0 if it wrote nothing.
+     */
+    long layoutHash() {
+        return layoutHash;
+    }
+
+    /**
+     * Blocks the last flush wrote per ore, indexed by OreType.index; may be longer than the ore count.
+     */
+    int[] oreCounts() {
+        return oreCounts;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, EMPTY);
+            size = 0;
+        }
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        Arrays.fill(slots, EMPTY);
+        for (int e = 0; e < size; e++) {
+            int packed = (int) (entries[e] >>> 32);
+            int i = mix(packed) & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = packed;
+        }
+    }
+
+    private static int mix(int packed) {
+        int h = packed * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
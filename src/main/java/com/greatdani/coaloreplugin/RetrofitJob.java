@@ -0,0 +1,586 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Adds ores to chunks that were generated before the plugin (or before an ore
+ * was added to the settings): walks the world's saved region files in order and,
+ * on every saved chunk the ledger doesn't already have under the current plan,
+ * runs the ore passes whose ore the chunk has none of. The ledger's per-ore
+ * counts say that when the chunk has a record; otherwise the chunk's blocks in
+ * the plan's Y range are scanned for the ores. An ore whose settings changed is
+ * not applied again to chunks that already have it, and passes with the Walk
+ * shape are left out, since a walk next to existing ore keeps placing. Only
+ * slots the region file's index says hold data are loaded, so the job never
+ * generates terrain. Runs as a {@link JobScheduler} job, one chunk per unit,
+ * loading a handful of chunks ahead, and saves its position every few hundred
+ * chunks so a restart picks up where it stopped.
+ * <p>
+ * The chunk doesn't say which rock the world generator put there, so rock
+ * placed by players counts as host rock too.
+ */
+final class RetrofitJob extends JobScheduler.Job {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final int MAGIC = 0x43525446;  // "CRTF"
+    private static final int VERSION = 1;
+
+    // Chunk loads requested ahead of the one being processed
+    private static final int LOOKAHEAD = 16;
+    private static final int CHECKPOINT_EVERY = 512;
+
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_CHUNKS = 1 << REGION_SHIFT;
+    private static final int CHUNKS_PER_REGION = REGION_CHUNKS * REGION_CHUNKS;
+
+    // Region file header: magic, version, blob count, segment size, then one int per slot (0 = empty)
+    private static final byte[] REGION_MAGIC = "HytaleIndexedStorage".getBytes(StandardCharsets.US_ASCII);
+
+    @FunctionalInterface
+    interface Populator {
+        /**
+         * Runs {@code plan} on an existing chunk, returns blocks written.
+         */
+        int populate(GenerationPlan plan, WorldChunk chunk);
+    }
+
+    private final Path checkpoint;
+    private final Supplier<GenerationPlan> plans;
+    private final Populator populator;
+    private final GenerationLedger ledger;
+
+    // Region sort keys, see sortKey; walked in order, Z rows then X
+    private final long[] regions;
+
+    // Per region, a bit per slot that holds a saved chunk, and the saved chunks in the regions before it
+    private final long[][] saved;
+    private final long[] savedBefore;
+
+    // Next chunk to request, and the first one not yet processed
+    private int requestRegion;
+    private int requestSlot;
+    private int doneRegion;
+    private int doneSlot;
+    private final ArrayDeque<Load> loads = new ArrayDeque<>();
+
+    private volatile long processed;
+    private volatile long retrofitted;
+    private volatile long skipped;
+    private volatile long blocks;
+    private long sinceCheckpoint;
+
+    // Passes of the last plan seen, see Passes
+    private Passes passes;
+
+    // Run time before this start plus the start time, for the rate
+    private long elapsedBefore;
+    private final long startedAt = System.nanoTime();
+
+    private RetrofitJob(World world, String worldName, long[] regions, long[][] saved, Path checkpoint,
+                        Supplier<GenerationPlan> plans, Populator populator, GenerationLedger ledger,
+                        Consumer<String> reporter) {
+        super("Retrofit", world, worldName, reporter);
+        this.regions = regions;
+        this.saved = saved;
+        this.savedBefore = new long[regions.length + 1];
+        for (int region = 0; region < regions.length; region++) {
+            savedBefore[region + 1] = savedBefore[region] + countSaved(saved[region], CHUNKS_PER_REGION);
+        }
+        this.checkpoint = checkpoint;
+        this.plans = plans;
+        this.populator = populator;
+        this.ledger = ledger;
+    }
+
+    /**
+     * A job over every region file in {@code chunksDir}, continuing from
+     * {@code checkpoint} if one was saved.
+     */
+    static RetrofitJob create(World world, String worldName, Path chunksDir, Path checkpoint,
+                              Supplier<GenerationPlan> plans, Populator populator, GenerationLedger ledger,
+                              Consumer<String> reporter) throws IOException {
+        long[] regions = listRegions(chunksDir);
+        long[][] saved = new long[regions.length][];
+        for (int region = 0; region < regions.length; region++) {
+            saved[region] = readSavedSlots(chunksDir.resolve(
+                    regionX(regions[region]) + "." + regionZ(regions[region]) + ".region.bin"));
+        }
+        RetrofitJob job = new RetrofitJob(world, worldName, regions, saved, checkpoint,
+                plans, populator, ledger, reporter);
+        if (Files.exists(checkpoint)) {
+            job.restore();
+        }
+        return job;
+    }
+
+    /**
+     * World a saved checkpoint belongs to, or null if it can't be read.
+     */
+    static String checkpointWorld(Path checkpoint) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION ? in.readUTF() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    long processed() {
+        return processed;
+    }
+
+    long retrofitted() {
+        return retrofitted;
+    }
+
+    long skipped() {
+        return skipped;
+    }
+
+    long blocks() {
+        return blocks;
+    }
+
+    long totalChunks() {
+        return savedBefore[regions.length];
+    }
+
+    double fraction() {
+        long total = totalChunks();
+        return total == 0 ? 1 : (double) position() / total;
+    }
+
+    /**
+     * Seconds left at the rate so far, or -1 before there is a rate.
+     */
+    long etaSeconds() {
+        long elapsed = elapsedNanos();
+        long done = position();
+        if (done == 0 || elapsed == 0) {
+            return -1;
+        }
+        double perChunk = (double) elapsed / done;
+        return (long) ((totalChunks() - done) * perChunk / 1e9);
+    }
+
+    @Override
+    String progress() {
+        long eta = etaSeconds();
+        return String.format("%.1f%% of %d chunks, %d retrofitted, %d blocks%s", fraction() * 100, totalChunks(),
+                retrofitted, blocks, state() == State.RUNNING && eta >= 0
+                        ? String.format(", ETA %dh %02dm %02ds", eta / 3600, eta / 60 % 60, eta % 60) : "");
+    }
+
+    // Saved chunks before the first one not yet processed
+    private long position() {
+        if (doneRegion >= regions.length) {
+            return totalChunks();
+        }
+        return savedBefore[doneRegion] + countSaved(saved[doneRegion], doneSlot);
+    }
+
+    private long elapsedNanos() {
+        return elapsedBefore + System.nanoTime() - startedAt;
+    }
+
+    // One chunk per unit
+    @Override
+    Step step() {
+        requestAhead();
+        Load next = loads.peek();
+        if (next == null) {
+            return Step.DONE;
+        }
+        if (!next.chunk.isDone()) {
+            return Step.YIELD;  // Still loading, try again next tick
+        }
+
+        GenerationPlan plan = plans.get();
+        if (plan == null || plan.isEmpty()) {
+            fail("ore generation is off for this world");
+            return Step.YIELD;
+        }
+
+        loads.poll();
+        process(plan, next);
+        doneRegion = next.region;
+        doneSlot = next.slot + 1;
+        if (doneSlot == CHUNKS_PER_REGION) {
+            doneRegion++;
+            doneSlot = 0;
+        }
+        if (++sinceCheckpoint >= CHECKPOINT_EVERY) {
+            saveCheckpoint();
+        }
+        return Step.MORE;
+    }
+
+    private void requestAhead() {
+        while (loads.size() < LOOKAHEAD && requestRegion < regions.length) {
+            // Empty slots would make getChunkAsync generate the chunk
+            if (isSaved(saved[requestRegion], requestSlot)) {
+                long key = regions[requestRegion];
+                int chunkX = (regionX(key) << REGION_SHIFT) | (requestSlot & (REGION_CHUNKS - 1));
+                int chunkZ = (regionZ(key) << REGION_SHIFT) | (requestSlot >> REGION_SHIFT);
+                long index = ChunkUtil.indexChunk(chunkX, chunkZ);
+
+                WorldChunk loaded = world.getChunkIfInMemory(index);
+                loads.add(new Load(requestRegion, requestSlot,
+                        loaded != null ? CompletableFuture.completedFuture(loaded) : world.getChunkAsync(index)));
+            }
+
+            if (++requestSlot == CHUNKS_PER_REGION) {
+                requestRegion++;
+                requestSlot = 0;
+            }
+        }
+    }
+
+    private void process(GenerationPlan plan, Load load) {
+        processed++;
+        WorldChunk chunk = load.chunk.getNow(null);
+        if (load.chunk.isCompletedExceptionally() || chunk == null) {
+            skipped++;
+            return;
+        }
+        GenerationLedger.Entry entry = ledger != null ? ledger.lookup(worldName, chunk.getX(), chunk.getZ()) : null;
+        if (entry != null && entry.fingerprint() == plan.fingerprint) {
+            skipped++;
+            return;
+        }
+
+        if (passes == null || passes.plan != plan) {
+            passes = new Passes(plan);
+            if (passes.walks > 0) {
+                report(String.format("Retrofit of %s leaves out %d ore pass(es) with VeinShape Walk", worldName,
+                        passes.walks));
+            }
+        }
+        GenerationPlan missing = passes.missingFrom(BlockAccess.ofChunk(chunk), chunk.getX(), chunk.getZ(), entry);
+        // Still run with no passes, so the ledger records the chunk as current
+        blocks += populator.populate(missing, chunk);
+        if (missing.isEmpty()) {
+            skipped++;
+        } else {
+            retrofitted++;
+        }
+    }
+
+    @Override
+    void ended(State state) {
+        loads.clear();
+        switch (state) {
+            case FINISHED -> {
+                deleteCheckpoint();
+                LOGGER.atInfo().log("Retrofit of %s done: %d chunks retrofitted, %d skipped, %d blocks placed",
+                        worldName, retrofitted, skipped, blocks);
+            }
+            case CANCELLED -> deleteCheckpoint();
+            default -> saveCheckpoint();
+        }
+    }
+
+    private void saveCheckpoint() {
+        sinceCheckpoint = 0;
+        if (regions.length == 0) {
+            return;
+        }
+
+        int region = Math.min(doneRegion, regions.length - 1);
+        int slot = doneRegion < regions.length ? doneSlot : CHUNKS_PER_REGION;
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(checkpoint.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(worldName);
+                out.writeLong(regions[region]);
+                out.writeInt(slot);
+                out.writeLong(processed);
+                out.writeLong(retrofitted);
+                out.writeLong(skipped);
+                out.writeLong(blocks);
+                out.writeLong(elapsedNanos());
+            }
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Failed to save retrofit checkpoint for %s: %s", worldName, e.getMessage());
+        }
+    }
+
+    private void restore() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.atWarning().log("Ignoring %s: unknown format", checkpoint.getFileName());
+                return;
+            }
+            in.readUTF();
+            long regionKey = in.readLong();
+            int slot = in.readInt();
+            processed = in.readLong();
+            retrofitted = in.readLong();
+            skipped = in.readLong();
+            blocks = in.readLong();
+            elapsedBefore = in.readLong();
+
+            // Region files may have been added since; carry on from the first one not before the saved one
+            int region = 0;
+            while (region < regions.length && regions[region] < regionKey) {
+                region++;
+            }
+            if (region < regions.length && regions[region] == regionKey) {
+                doneSlot = Math.min(slot, CHUNKS_PER_REGION);
+                if (doneSlot == CHUNKS_PER_REGION) {
+                    region++;
+                    doneSlot = 0;
+                }
+            }
+            doneRegion = region;
+            requestRegion = doneRegion;
+            requestSlot = doneSlot;
+            LOGGER.atInfo().log("Resuming retrofit of %s at %.1f%%", worldName, fraction() * 100);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.atWarning().log("Failed to read %s, starting over: %s", checkpoint.getFileName(), e.getMessage());
+        }
+    }
+
+    private void deleteCheckpoint() {
+        try {
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException e) {
+            GenerationMetrics.GLOBAL.recordSwallowed(e);
+        }
+    }
+
+    // Files are "<regionX>.<regionZ>.region.bin", 32x32 chunks each
+    private static long[] listRegions(Path chunksDir) throws IOException {
+        if (!Files.isDirectory(chunksDir)) {
+            throw new FileNotFoundException("no saved chunks in " + chunksDir);
+        }
+
+        List<Long> keys = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(chunksDir, "*.region.bin")) {
+            for (Path file : files) {
+                String[] parts = file.getFileName().toString().split("\\.");
+                try {
+                    keys.add(sortKey(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // Not a region file
+                }
+            }
+        }
+
+        long[] sorted = new long[keys.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = keys.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * A bit per slot of the region file that holds a chunk. Slots are X + Z * 32
+     * within the region. A file that can't be read counts as empty, so its chunks
+     * are skipped rather than loaded blind.
+     */
+    private static long[] readSavedSlots(Path file) {
+        long[] slots = new long[CHUNKS_PER_REGION / Long.SIZE];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = new byte[REGION_MAGIC.length];
+            in.readFully(magic);
+            in.readInt();  // Version
+            int blobs = in.readInt();
+            in.readInt();  // Segment size
+            if (!Arrays.equals(magic, REGION_MAGIC) || blobs != CHUNKS_PER_REGION) {
+                LOGGER.atWarning().log("Skipping %s: not a %d-chunk region file", file.getFileName(), CHUNKS_PER_REGION);
+                return slots;
+            }
+            for (int slot = 0; slot < CHUNKS_PER_REGION; slot++) {
+                if (in.readInt() != 0) {
+                    slots[slot >> 6] |= 1L << slot;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Skipping %s: %s", file.getFileName(), e.getMessage());
+            Arrays.fill(slots, 0L);
+        }
+        return slots;
+    }
+
+    private static boolean isSaved(long[] slots, int slot) {
+        return (slots[slot >> 6] & 1L << slot) != 0;
+    }
+
+    // Saved slots before slot end
+    private static int countSaved(long[] slots, int end) {
+        int count = 0;
+        for (int word = 0; word < end >> 6; word++) {
+            count += Long.bitCount(slots[word]);
+        }
+        if ((end & 63) != 0) {
+            count += Long.bitCount(slots[end >> 6] & (1L << end) - 1);
+        }
+        return count;
+    }
+
+    // Sorts by Z, then X; X is flipped to unsigned so negative rows order correctly
+    private static long sortKey(int regionX, int regionZ) {
+        return ((long) regionZ << 32) | ((regionX ^ 0x80000000) & 0xFFFFFFFFL);
+    }
+
+    private static int regionX(long key) {
+        return (int) key ^ 0x80000000;
+    }
+
+    private static int regionZ(long key) {
+        return (int) (key >> 32);
+    }
+
+    private record Load(int region, int slot, CompletableFuture<WorldChunk> chunk) {
+    }
+
+    /**
+     * The passes of one plan a retrofit may run, and the ores each of them places:
+     * its own ore for a custom ore, for coal every ore no custom pass places.
+     */
+    private static final class Passes {
+        final GenerationPlan plan;
+        final int walks;
+
+        private final GenerationPlan.OrePass[] passes;
+        private final int[][] oresOf;
+        private final int[] oreOfBlock;
+        private final boolean[] present;
+
+        Passes(GenerationPlan plan) {
+            this.plan = plan;
+            BlockCache.BlockCaches cache = plan.cache;
+
+            boolean[] custom = new boolean[cache.oreCount()];
+            for (GenerationPlan.OrePass pass : plan.customOres) {
+                custom[pass.ore.index] = true;
+            }
+
+            List<GenerationPlan.OrePass> kept = new ArrayList<>();
+            List<int[]> ores = new ArrayList<>();
+            int walked = 0;
+            if (plan.coal != null) {
+                if (plan.coal.shape == VeinShape.WALK && plan.coal.noiseField == null) {
+                    walked++;
+                } else {
+                    kept.add(plan.coal);
+                    int[] coalOres = new int[cache.oreCount()];
+                    int n = 0;
+                    for (int ore = 0; ore < cache.oreCount(); ore++) {
+                        if (!custom[ore]) coalOres[n++] = ore;
+                    }
+                    ores.add(n > 0 ? Arrays.copyOf(coalOres, n) : allOres(cache.oreCount()));
+                }
+            }
+            for (GenerationPlan.OrePass pass : plan.customOres) {
+                if (pass.shape == VeinShape.WALK && pass.noiseField == null) {
+                    walked++;
+                } else {
+                    kept.add(pass);
+                    ores.add(new int[]{pass.ore.index});
+                }
+            }
+            this.passes = kept.toArray(new GenerationPlan.OrePass[0]);
+            this.oresOf = ores.toArray(new int[0][]);
+            this.walks = walked;
+
+            int maxId = 0;
+            for (int i = 0; i < cache.oreCount(); i++) {
+                maxId = Math.max(maxId, cache.getOre(i).id);
+            }
+            this.oreOfBlock = new int[maxId + 1];
+            Arrays.fill(oreOfBlock, -1);
+            for (int i = cache.oreCount() - 1; i >= 0; i--) {
+                int id = cache.getOre(i).id;
+                if (id >= 0) oreOfBlock[id] = i;
+            }
+            this.present = new boolean[cache.oreCount()];
+        }
+
+        private static int[] allOres(int count) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) all[i] = i;
+            return all;
+        }
+
+        /**
+         * The plan cut down to the passes none of whose ores the chunk has.
+         */
+        GenerationPlan missingFrom(BlockAccess blocks, int chunkX, int chunkZ, GenerationLedger.Entry entry) {
+            String[] names = plan.cache.oreNames();
+            boolean scanned = false;
+            GenerationPlan.OrePass coal = null;
+            List<GenerationPlan.OrePass> custom = new ArrayList<>();
+
+            for (int i = 0; i < passes.length; i++) {
+                boolean has = false;
+                boolean known = entry != null;
+                for (int ore : oresOf[i]) {
+                    int count = entry != null ? entry.blocksOf(names[ore]) : -1;
+                    if (count > 0) {
+                        has = true;
+                        break;
+                    }
+                    known &= count == 0;
+                }
+                if (!has && !known) {
+                    if (!scanned) {
+                        scan(blocks, chunkX, chunkZ);
+                        scanned = true;
+                    }
+                    for (int ore : oresOf[i]) {
+                        has |= present[ore];
+                    }
+                }
+
+                if (!has) {
+                    if (passes[i] == plan.coal) {
+                        coal = passes[i];
+                    } else {
+                        custom.add(passes[i]);
+                    }
+                }
+            }
+            return plan.withPasses(coal, custom.toArray(new GenerationPlan.OrePass[0]));
+        }
+
+        // Marks the ores found in the chunk within the plan's Y range
+        private void scan(BlockAccess blocks, int chunkX, int chunkZ) {
+            Arrays.fill(present, false);
+            int baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+            int baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+            for (int y = plan.minY; y <= plan.maxY; y++) {
+                for (int z = 0; z < CoalOreConfig.CHUNK_SIZE; z++) {
+                    for (int x = 0; x < CoalOreConfig.CHUNK_SIZE; x++) {
+                        int block = blocks.getBlock(baseX + x, y, baseZ + z);
+                        if (block >= 0 && block < oreOfBlock.length && oreOfBlock[block] >= 0) {
+                            present[oreOfBlock[block]] = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
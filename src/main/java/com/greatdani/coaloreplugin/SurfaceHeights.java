@@ -0,0 +1,89 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.Arrays;
+
+/**
+ * Per-chunk surface heightmap for depth-relative veins. The surface of a column
+ * is its highest block some ore can replace, so trees, plants and loose soil on
+ * top don't count. Columns are scanned on first use and remembered until the
+ * next chunk; one instance per thread, reused.
+ */
+final class SurfaceHeights {
+
+    // Column has no rock any ore could use
+    static final int NONE = Integer.MIN_VALUE;
+
+    private static final int UNKNOWN = Integer.MAX_VALUE;
+
+    // Coarse step for the downward scan, refined once rock is hit
+    private static final int SCAN_STEP = 4;
+
+    private static final ThreadLocal<SurfaceHeights> LOCAL = ThreadLocal.withInitial(SurfaceHeights::new);
+
+    private final int[] heights = new int[CoalOreConfig.CHUNK_SIZE * CoalOreConfig.CHUNK_SIZE];
+    private BlockAccess blocks;
+    private BlockCache.BlockCaches cache;
+    private int baseX;
+    private int baseZ;
+    private int columnsScanned;
+
+    private SurfaceHeights() {
+    }
+
+    /**
+     * This thread's heightmap, cleared for the given chunk.
+     */
+    static SurfaceHeights forChunk(BlockAccess blocks, int chunkX, int chunkZ, BlockCache.BlockCaches cache) {
+        SurfaceHeights heights = LOCAL.get();
+        Arrays.fill(heights.heights, UNKNOWN);
+        heights.blocks = blocks;
+        heights.cache = cache;
+        heights.baseX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        heights.baseZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        heights.columnsScanned = 0;
+        return heights;
+    }
+
+    /**
+     * Surface Y of a chunk-local column, or {@link #NONE}.
+     */
+    int surfaceY(int localX, int localZ) {
+        int i = (localZ << CoalOreConfig.CHUNK_SHIFT) | localX;
+        int y = heights[i];
+        if (y == UNKNOWN) {
+            y = scan(baseX + localX, baseZ + localZ);
+            heights[i] = y;
+            columnsScanned++;
+        }
+        return y;
+    }
+
+    int columnsScanned() {
+        return columnsScanned;
+    }
+
+    // Drops the chunk's references so the pooled instance doesn't keep it alive
+    void release() {
+        blocks = null;
+        cache = null;
+    }
+
+    private int scan(int x, int z) {
+        for (int y = CoalOreConfig.WORLD_MAX_Y; y >= CoalOreConfig.WORLD_MIN_Y; y -= SCAN_STEP) {
+            if (isRock(x, y, z)) {
+                // Rock layers thinner than the step above this one are missed, which is fine here
+                int top = y;
+                while (top < CoalOreConfig.WORLD_MAX_Y && top < y + SCAN_STEP - 1 && isRock(x, top + 1, z)) {
+                    top++;
+                }
+                return top;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean isRock(int x, int y, int z) {
+        int block = blocks.getBlock(x, y, z);
+        return block != BlockAccess.UNAVAILABLE && cache.isHostBlock(block);
+    }
+}
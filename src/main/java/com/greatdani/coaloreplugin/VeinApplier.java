@@ -0,0 +1,243 @@
+package com.greatdani.coaloreplugin;
+
+/**
+ * Turns a {@link ChunkVeinPlan} into placements: checks each planned cell's
+ * host block and queues accepted ores in the {@link PlacementBuffer}.
+ */
+final class VeinApplier {
+
+    private VeinApplier() {
+    }
+
+    /**
+     * Depth-relative veins are moved down to their depth below the surface first,
+     * see {@link SurfaceHeights}.
+     *
+     * @return number of ore blocks queued
+     */
+    static int apply(BlockAccess blocks, BlockCache.BlockCaches cache, PlacementBuffer buffer, ChunkVeinPlan veins) {
+        return apply(blocks, cache, buffer, veins, null);
+    }
+
+    /**
+     * Same as {@link #apply(BlockAccess, BlockCache.BlockCaches, PlacementBuffer, ChunkVeinPlan)},
+     * also counting attempted and successful veins in {@code metrics} when it isn't null.
+     */
+    static int apply(BlockAccess blocks, BlockCache.BlockCaches cache, PlacementBuffer buffer, ChunkVeinPlan veins,
+                     GenerationMetrics metrics) {
+        return apply(blocks, cache, buffer, veins, metrics, null, null);
+    }
+
+    /**
+     * With a {@link HostRockCensus}, veins of ores it found no host rock for in the
+     * chunk are skipped, veins starting in a section where it found none are moved
+     * a whole number of sections up or down to the nearest one where it did, and
+     * cells in such sections are skipped without reading the block. The census is
+     * a sample, so some of those could have placed.
+     * Moving whole sections keeps the shape and stays deterministic for a given
+     * chunk, whether the plan was made ahead of time or inline.
+     * <p>
+     * With a {@code spill} batch, each vein's cells in neighbouring chunks are
+     * collected there, moved the same way as the vein itself. They share the
+     * vein's block budget: only as many as the chunk's own cells fell short of
+     * it are passed on, so a random walk that already placed its size here
+     * doesn't grow into the neighbours.
+     */
+    static int apply(BlockAccess blocks, BlockCache.BlockCaches cache, PlacementBuffer buffer, ChunkVeinPlan veins,
+                     GenerationMetrics metrics, HostRockCensus census, PendingPlacements.Batch spill) {
+        int chunkBlockX = veins.chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int chunkBlockZ = veins.chunkZ << CoalOreConfig.CHUNK_SHIFT;
+        int[] data = veins.data;
+        int totalPlaced = 0;
+        int veinsPlaced = 0;
+        int fields = 0;
+        int fieldsPlaced = 0;
+        int p = 0;
+
+        // Census bookkeeping for metrics
+        long cellsConsidered = 0;
+        long cellsSkipped = 0;
+        int veinsMoved = 0;
+        int veinsDropped = 0;
+        int depthDropped = 0;
+        long anyOre = cache.oreCount() >= Long.SIZE ? -1L : (1L << cache.oreCount()) - 1;
+        GenerationPlan.OrePass coal = veins.source.coal;
+
+        // Only scanned if the plan has depth-relative veins
+        SurfaceHeights heights = null;
+
+        for (int v = 0; v < veins.veinCount; v++) {
+            int oreIndex = data[p];
+            int targetBlocks = data[p + 1];
+            int count = data[p + 2];
+            int depth = data[p + 3];
+            if (depth == ChunkVeinPlan.FIELD) {
+                fields++;
+            }
+            int spillCount = data[p + 4];
+            p += ChunkVeinPlan.HEADER;
+            int next = p + count + spillCount;
+
+            BlockCache.OreType specificOre = oreIndex >= 0 ? cache.getOre(oreIndex) : null;
+            int minY = oreIndex >= 0 ? cache.oreMinY(oreIndex) : coal != null ? coal.minY : CoalOreConfig.WORLD_MIN_Y;
+            int maxY = oreIndex >= 0 ? cache.oreMaxY(oreIndex) : coal != null ? coal.maxY : CoalOreConfig.WORLD_MAX_Y;
+            int placed = 0;
+
+            int dy = 0;
+            if (depth >= 0) {
+                if (heights == null) {
+                    heights = SurfaceHeights.forChunk(blocks, veins.chunkX, veins.chunkZ, cache);
+                }
+                dy = depthShift(heights, data[p], depth, minY, maxY);
+                if (dy == Integer.MIN_VALUE) {
+                    depthDropped++;
+                    p = next;
+                    continue;
+                }
+            }
+
+            // Coal veins take whichever variant matches the host, so any ore's rock counts
+            long oreMask = oreIndex >= 0 ? 1L << oreIndex : anyOre;
+            if (census != null) {
+                int originY = (data[p] >> (2 * CoalOreConfig.CHUNK_SHIFT)) + dy;
+                int censusShift;
+                if (!census.anyHost(oreMask)) {
+                    censusShift = Integer.MIN_VALUE;
+                } else if (depth >= 0 || depth == ChunkVeinPlan.FIELD) {
+                    // Already placed by depth, or a field spread over the whole range; only skip cells
+                    censusShift = 0;
+                } else {
+                    censusShift = census.shiftFor(oreMask, originY, minY, maxY);
+                }
+
+                if (censusShift == Integer.MIN_VALUE) {
+                    veinsDropped++;
+                    cellsConsidered += count;
+                    cellsSkipped += count;
+                    p = next;
+                    continue;
+                }
+                if (censusShift != 0) {
+                    veinsMoved++;
+                }
+                dy += censusShift;
+            }
+
+            if (census == null && dy == 0) {
+                for (int i = 0; i < count && placed < targetBlocks; i++) {
+                    if (tryPlaceOre(blocks, chunkBlockX, chunkBlockZ, cache, buffer, data[p + i], specificOre)) {
+                        placed++;
+                    }
+                }
+            } else {
+                int packedShift = dy << (2 * CoalOreConfig.CHUNK_SHIFT);
+
+                for (int i = 0; i < count && placed < targetBlocks; i++) {
+                    int packed = data[p + i] + packedShift;
+                    int y = packed >> (2 * CoalOreConfig.CHUNK_SHIFT);
+                    if (y < CoalOreConfig.WORLD_MIN_Y || y > CoalOreConfig.WORLD_MAX_Y) {
+                        continue;
+                    }
+                    if (census != null) {
+                        cellsConsidered++;
+                        if (!census.mayHost(oreMask, y)) {
+                            cellsSkipped++;
+                            continue;
+                        }
+                    }
+                    if (tryPlaceOre(blocks, chunkBlockX, chunkBlockZ, cache, buffer, packed, specificOre)) {
+                        placed++;
+                    }
+                }
+            }
+
+            if (spill != null && placed < targetBlocks) {
+                int end = Math.min(next, p + count + targetBlocks - placed);
+                for (int i = p + count; i < end; i++) {
+                    int entry = data[i];
+                    int packed = ChunkVeinPlan.spillPacked(entry);
+                    int y = (packed >> (2 * CoalOreConfig.CHUNK_SHIFT)) + dy;
+                    if (y >= CoalOreConfig.WORLD_MIN_Y && y <= CoalOreConfig.WORLD_MAX_Y) {
+                        spill.add(ChunkVeinPlan.spillDx(entry), ChunkVeinPlan.spillDz(entry), oreIndex,
+                                packed + (dy << (2 * CoalOreConfig.CHUNK_SHIFT)));
+                    }
+                }
+            }
+
+            totalPlaced += placed;
+            if (placed > 0) {
+                if (depth == ChunkVeinPlan.FIELD) {
+                    fieldsPlaced++;
+                } else {
+                    veinsPlaced++;
+                }
+            }
+            p = next;
+        }
+
+        if (heights != null) {
+            heights.release();
+        }
+
+        if (metrics != null) {
+            metrics.veinsAttempted.add(veins.veinCount - fields);
+            metrics.veinsPlaced.add(veinsPlaced);
+            metrics.fieldsAttempted.add(fields);
+            metrics.fieldsPlaced.add(fieldsPlaced);
+            if (census != null) {
+                metrics.censusReads.add(census.reads());
+                metrics.censusCellsConsidered.add(cellsConsidered);
+                metrics.censusCellsSkipped.add(cellsSkipped);
+                metrics.censusVeinsMoved.add(veinsMoved);
+                metrics.censusVeinsDropped.add(veinsDropped);
+            }
+            if (heights != null) {
+                metrics.surfaceColumnsScanned.add(heights.columnsScanned());
+                metrics.depthVeinsDropped.add(depthDropped);
+            }
+        }
+        return totalPlaced;
+    }
+
+    /**
+     * How far to move a depth-relative vein so its origin sits {@code depth} blocks
+     * below the surface of its column, kept inside {@code [minY, maxY]}.
+     * {@link Integer#MIN_VALUE} when the column has no rock or the range is above it.
+     */
+    static int depthShift(SurfaceHeights heights, int originPacked, int depth, int minY, int maxY) {
+        int surface = heights.surfaceY(originPacked & CoalOreConfig.CHUNK_MASK,
+                (originPacked >> CoalOreConfig.CHUNK_SHIFT) & CoalOreConfig.CHUNK_MASK);
+        if (surface == SurfaceHeights.NONE) {
+            return Integer.MIN_VALUE;
+        }
+
+        int targetY = Math.max(minY, Math.min(maxY, surface - depth));
+        if (targetY > surface) {
+            return Integer.MIN_VALUE;
+        }
+        return targetY - (originPacked >> (2 * CoalOreConfig.CHUNK_SHIFT));
+    }
+
+    static boolean tryPlaceOre(BlockAccess blocks, int chunkBlockX, int chunkBlockZ, BlockCache.BlockCaches cache,
+                               PlacementBuffer buffer, int packed, BlockCache.OreType specificOre) {
+        int localX = packed & CoalOreConfig.CHUNK_MASK;
+        int localZ = (packed >> CoalOreConfig.CHUNK_SHIFT) & CoalOreConfig.CHUNK_MASK;
+        int y = packed >> (2 * CoalOreConfig.CHUNK_SHIFT);
+
+        // Already ore once the buffer is flushed, so nothing else can replace it
+        if (buffer.isClaimed(localX, y, localZ)) {
+            return false;
+        }
+
+        int currentBlock = blocks.getBlock(chunkBlockX + localX, y, chunkBlockZ + localZ);
+
+        int ore;
+        if (specificOre != null) {
+            ore = specificOre.canPlaceAt(currentBlock, y) ? specificOre.index : -1;
+        } else {
+            ore = cache.oreIndexForBlock(currentBlock, y);
+        }
+
+        return ore >= 0 && buffer.add(localX, y, localZ, ore);
+    }
+}
@@ -0,0 +1,220 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plans chunk vein layouts ahead of time on a small worker pool so the
+ * pre-load handler only has to check host blocks and write. Finished plans
+ * sit in a bounded store until their chunk shows up or they are evicted.
+ */
+final class VeinPlanService {
+
+    // Longest a chunk thread waits for a worker's plan before planning the chunk itself
+    private static final long TAKE_WAIT_MILLIS = 200;
+
+    private final ExecutorService workers;
+    private final int capacity;
+
+    private final ConcurrentHashMap<Long, Pending> plans = new ConcurrentHashMap<>();
+    // Scheduling order, oldest first, for eviction
+    private final ConcurrentLinkedQueue<Pending> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // Plans scheduled but not yet finished
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder scheduled = new LongAdder();
+    final LongAdder evicted = new LongAdder();
+
+    VeinPlanService(int threads, int capacity) {
+        this.capacity = capacity;
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "CoalOre-Planner-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues planning for a chunk of {@code world} unless a plan for it is already pending.
+     */
+    void schedule(WorldGenContext world, GenerationPlan plan, int chunkX, int chunkZ) {
+        long key = key(world, chunkX, chunkZ);
+        if (plans.containsKey(key)) {
+            return;
+        }
+
+        Pending pending = new Pending(key, world.storeKey);
+        if (plans.putIfAbsent(key, pending) != null) {
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        try {
+            workers.execute(() -> {
+                try {
+                    // The chunk got here first and plans itself
+                    if (!pending.claimed.compareAndSet(false, true)) return;
+                    pending.plan.complete(VeinPlanner.plan(plan, world.resolver, world.seed, chunkX, chunkZ));
+                } catch (Throwable t) {
+                    pending.plan.completeExceptionally(t);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            plans.remove(key, pending);
+            return;
+        }
+
+        scheduled.increment();
+        order.add(pending);
+        queued.incrementAndGet();
+        evictOverflow();
+    }
+
+    /**
+     * Removes and returns the plan for a chunk, or null if there is none or it was
+     * made from a different {@link GenerationPlan} (older config, or another world
+     * whose key collided). A plan a worker is still making is waited for, since
+     * planning again inline would take as long, but no longer than
+     * {@link #TAKE_WAIT_MILLIS}; one no worker has picked up yet is dropped for
+     * the caller to plan itself.
+     */
+    ChunkVeinPlan take(WorldGenContext world, GenerationPlan current, int chunkX, int chunkZ) {
+        long key = key(world, chunkX, chunkZ);
+        Pending pending = plans.get(key);
+        if (pending == null || pending.claimed.compareAndSet(false, true)) {
+            if (pending != null) {
+                plans.remove(key, pending);
+            }
+            misses.increment();
+            return null;
+        }
+
+        CompletableFuture<ChunkVeinPlan> future = pending.plan;
+        try {
+            future.get(TAKE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CancellationException | TimeoutException e) {
+            // Counted as a miss below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        plans.remove(key, pending);
+
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            ChunkVeinPlan plan = future.getNow(null);
+            if (plan != null && plan.source == current && plan.chunkX == chunkX && plan.chunkZ == chunkZ) {
+                hits.increment();
+                return plan;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Plans those of the eight chunks around one that just generated which haven't
+     * generated themselves; exploration usually reaches them next.
+     */
+    void scheduleNeighbours(WorldGenContext world, GenerationPlan plan, int chunkX, int chunkZ,
+                            PendingPlacements.NeighbourCheck generated) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if ((dx != 0 || dz != 0) && !generated.isGenerated(chunkX + dx, chunkZ + dz)) {
+                    schedule(world, plan, chunkX + dx, chunkZ + dz);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every plan of the world with {@code storeKey}, e.g. when the world is removed.
+     */
+    void forget(long storeKey) {
+        plans.values().removeIf(pending -> {
+            if (pending.worldKey != storeKey) {
+                return false;
+            }
+            if (pending.claimed.compareAndSet(false, true)) {
+                pending.plan.cancel(false);
+            }
+            return true;
+        });
+        for (Pending pending : order) {
+            // Eviction may poll it first
+            if (pending.worldKey == storeKey && order.remove(pending)) {
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    int pending() {
+        return plans.size();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    void shutdown() {
+        workers.shutdownNow();
+        // Queued work was dropped, so nothing would complete these
+        plans.values().forEach(pending -> pending.plan.cancel(false));
+        plans.clear();
+        order.clear();
+    }
+
+    private static long key(WorldGenContext world, int chunkX, int chunkZ) {
+        return ChunkUtil.indexChunk(chunkX, chunkZ) ^ world.storeKey;
+    }
+
+    private void evictOverflow() {
+        while (queued.get() > capacity) {
+            Pending oldest = order.poll();
+            if (oldest == null) {
+                break;
+            }
+            queued.decrementAndGet();
+
+            // Plans already taken by their chunk, or rescheduled since, are left alone
+            if (plans.remove(oldest.key, oldest)) {
+                // No point planning it if a worker hasn't started yet; a started one completes it itself
+                if (oldest.claimed.compareAndSet(false, true)) {
+                    oldest.plan.cancel(false);
+                }
+                evicted.increment();
+            }
+        }
+    }
+
+    private static final class Pending {
+        final long key;
+        final long worldKey;
+        final CompletableFuture<ChunkVeinPlan> plan = new CompletableFuture<>();
+        // Set by whoever plans the chunk first, a worker or the chunk itself
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        Pending(long key, long worldKey) {
+            this.key = key;
+            this.worldKey = worldKey;
+        }
+    }
+}
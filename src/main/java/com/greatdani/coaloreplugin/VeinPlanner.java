@@ -0,0 +1,295 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Works out where veins go in a chunk. Only depends on the world seed, chunk
+ * coordinates, the compiled plan and the zone/biome at the chunk, so it can run
+ * on any thread. Every ore and every vein draws from its own {@link OreSeeds} stream.
+ */
+final class VeinPlanner {
+
+    private VeinPlanner() {
+    }
+
+    // Below this many veins the fork/join overhead outweighs the walk itself
+    private static final int PARALLEL_MIN_VEINS = 64;
+    private static final int PARALLEL_PARTS = 8;
+
+    private static volatile ForkJoinPool parallelPool;
+
+    static ChunkVeinPlan plan(GenerationPlan plan, ZoneBiomeResolver resolver, long worldSeed, int chunkX, int chunkZ) {
+        return plan(plan, resolver, worldSeed, chunkX, chunkZ, GenerationMetrics.GLOBAL);
+    }
+
+    /**
+     * Same as {@link #plan(GenerationPlan, ZoneBiomeResolver, long, int, int)}, counting
+     * zone/biome rejections in {@code metrics}, or nowhere when it is null (replays
+     * that aren't generation).
+     */
+    static ChunkVeinPlan plan(GenerationPlan plan, ZoneBiomeResolver resolver, long worldSeed, int chunkX, int chunkZ,
+                              GenerationMetrics metrics) {
+        long chunkSeed = OreSeeds.chunkSeed(worldSeed, chunkX, chunkZ);
+        VeinTasks tasks = new VeinTasks();
+        ZoneBiomeResolver.ZoneBiome zoneBiome = null;
+
+        if (plan.coal != null) {
+            zoneBiome = addPass(tasks, plan.coal, resolver, chunkSeed, chunkX, chunkZ, zoneBiome, metrics);
+        }
+        for (GenerationPlan.OrePass customOre : plan.customOres) {
+            zoneBiome = addPass(tasks, customOre, resolver, chunkSeed, chunkX, chunkZ, zoneBiome, metrics);
+        }
+
+        ChunkVeinPlan.Builder out = new ChunkVeinPlan.Builder(plan, chunkX, chunkZ);
+        if (plan.parallelVeins && tasks.size >= PARALLEL_MIN_VEINS) {
+            planParallel(out, tasks, chunkX, chunkZ, worldSeed, chunkSeed);
+        } else {
+            planRange(out, tasks, 0, tasks.size, chunkX, chunkZ, worldSeed, chunkSeed);
+        }
+        return out.build();
+    }
+
+    /**
+     * Rolls the pass's spawn chance and, if it spawns, queues its veins; returns
+     * the chunk's zone/biome when that had to be looked up (or was already known).
+     * Restricted ores only look it up once the roll has passed, unless their
+     * zone profiles decide the chance.
+     */
+    private static ZoneBiomeResolver.ZoneBiome addPass(VeinTasks tasks, GenerationPlan.OrePass pass,
+                                                       ZoneBiomeResolver resolver, long chunkSeed, int chunkX, int chunkZ,
+                                                       ZoneBiomeResolver.ZoneBiome zoneBiome,
+                                                       GenerationMetrics metrics) {
+        SplittableRandom oreRandom = OreSeeds.oreStream(chunkSeed, pass.seedKey);
+        GenerationPlan.OrePass effective = pass;
+        if (pass.profiled) {
+            if (zoneBiome == null) {
+                zoneBiome = resolve(resolver, chunkX, chunkZ);
+            }
+            effective = pass.in(zoneBiome);
+        }
+
+        if (oreRandom.nextDouble() > (effective != null ? effective : pass).spawnChance) {
+            return zoneBiome;
+        }
+
+        if (pass.restricted && !pass.profiled) {
+            if (zoneBiome == null) {
+                zoneBiome = resolve(resolver, chunkX, chunkZ);
+            }
+            effective = pass.in(zoneBiome);
+        }
+        if (effective == null) {
+            if (metrics != null) {
+                metrics.zoneBiomeRejections.increment();
+            }
+            return zoneBiome;
+        }
+
+        tasks.add(effective, veinCount(effective, oreRandom));
+        return zoneBiome;
+    }
+
+    // A noise field is filled in one go, as a single task
+    private static int veinCount(GenerationPlan.OrePass pass, SplittableRandom oreRandom) {
+        return pass.noiseField != null ? 1 : pass.veinsPerChunk + oreRandom.nextInt(2);
+    }
+
+    private static ZoneBiomeResolver.ZoneBiome resolve(ZoneBiomeResolver resolver, int chunkX, int chunkZ) {
+        return resolver != null ? resolver.resolve(chunkX, chunkZ) : ZoneBiomeResolver.ZoneBiome.UNKNOWN;
+    }
+
+    private static void planRange(ChunkVeinPlan.Builder out, VeinTasks tasks, int from, int to,
+                                  int chunkX, int chunkZ, long worldSeed, long chunkSeed) {
+        for (int t = from; t < to; t++) {
+            GenerationPlan.OrePass pass = tasks.passes[t];
+            int oreIndex = pass.ore != null ? pass.ore.index : -1;
+            if (pass.noiseField != null) {
+                pass.noiseField.plan(out, worldSeed, pass.seedKey, chunkX, chunkZ, pass.minY, pass.maxY, oreIndex);
+                continue;
+            }
+            planVein(out, pass, oreIndex, chunkX, chunkZ, OreSeeds.veinStream(chunkSeed, pass.seedKey, tasks.veins[t]));
+        }
+    }
+
+    /**
+     * Splits the veins into contiguous ranges, walks each range into its own
+     * builder and concatenates them in task order. Because placement applies
+     * veins first-come-first-served, keeping that order means overlapping cells
+     * resolve exactly as in the sequential path.
+     */
+    private static void planParallel(ChunkVeinPlan.Builder out, VeinTasks tasks, int chunkX, int chunkZ,
+                                     long worldSeed, long chunkSeed) {
+        ForkJoinPool pool = parallelPool();
+        int parts = Math.min(PARALLEL_PARTS, pool.getParallelism() * 2);
+        int perPart = (tasks.size + parts - 1) / parts;
+
+        List<ForkJoinTask<ChunkVeinPlan.Builder>> futures = new ArrayList<>(parts);
+        for (int from = 0; from < tasks.size; from += perPart) {
+            int start = from;
+            int end = Math.min(tasks.size, from + perPart);
+            futures.add(pool.submit(() -> {
+                ChunkVeinPlan.Builder part = new ChunkVeinPlan.Builder(out.source, chunkX, chunkZ);
+                planRange(part, tasks, start, end, chunkX, chunkZ, worldSeed, chunkSeed);
+                return part;
+            }));
+        }
+
+        for (ForkJoinTask<ChunkVeinPlan.Builder> future : futures) {
+            out.append(future.join());
+        }
+    }
+
+    private static ForkJoinPool parallelPool() {
+        ForkJoinPool pool = parallelPool;
+        if (pool == null) {
+            synchronized (VeinPlanner.class) {
+                pool = parallelPool;
+                if (pool == null) {
+                    pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+                    parallelPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    static void shutdownParallelPool() {
+        synchronized (VeinPlanner.class) {
+            if (parallelPool != null) {
+                parallelPool.shutdownNow();
+                parallelPool = null;
+            }
+        }
+    }
+
+    static void planVein(ChunkVeinPlan.Builder out, GenerationPlan.OrePass pass, int oreIndex,
+                         int chunkX, int chunkZ, SplittableRandom veinRandom) {
+        int x = (chunkX << CoalOreConfig.CHUNK_SHIFT) + veinRandom.nextInt(CoalOreConfig.CHUNK_SIZE);
+        int z = (chunkZ << CoalOreConfig.CHUNK_SHIFT) + veinRandom.nextInt(CoalOreConfig.CHUNK_SIZE);
+        // The surface isn't known until the chunk exists, the applier moves depth veins down to it
+        int depth = pass.depthRelative() ? computeOreDepth(pass, veinRandom) : -1;
+        int y = depth >= 0 ? ChunkVeinPlan.DEPTH_REFERENCE_Y : computeOreY(pass, veinRandom);
+        int size = pass.minVeinSize + veinRandom.nextInt(pass.veinSizeRange);
+
+        if (pass.shape.isTemplate()) {
+            int[] template = pass.shape.template(veinRandom.nextInt(VeinShape.ROTATIONS));
+            stampVein(out, chunkX, chunkZ, x, y, z, template, size, oreIndex, depth);
+        } else {
+            generateVein(out, chunkX, chunkZ, x, y, z, size, veinRandom, oreIndex, depth);
+        }
+    }
+
+    /**
+     * Records the first {@code size} cells of a {@link VeinShape} template around
+     * the origin, as many as fall inside the chunk and the world.
+     */
+    static void stampVein(ChunkVeinPlan.Builder out, int chunkX, int chunkZ, int startX, int startY, int startZ,
+                          int[] template, int size, int oreIndex, int depth) {
+        int cells = Math.min(size, template.length);
+        int minX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+        int minZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+
+        out.beginVein(oreIndex, cells, depth);
+        for (int i = 0; i < cells; i++) {
+            int offset = template[i];
+            int x = startX + VeinShape.dx(offset) - minX;
+            int y = startY + VeinShape.dy(offset);
+            int z = startZ + VeinShape.dz(offset) - minZ;
+
+            if (y < CoalOreConfig.WORLD_MIN_Y || y > CoalOreConfig.WORLD_MAX_Y) {
+                continue;
+            }
+            // One unsigned compare per horizontal axis covers both chunk edges
+            if ((x | z) >>> CoalOreConfig.CHUNK_SHIFT == 0) {
+                out.add(PlacementBuffer.pack(x, y, z));
+            } else if (out.keepSpill) {
+                addSpill(out, x, y, z);
+            }
+        }
+        out.endVein();
+    }
+
+    /**
+     * Records the full random walk for one vein. Whether a step actually places
+     * ore depends on the host block, so that is left to whoever applies the plan.
+     */
+    static void generateVein(ChunkVeinPlan.Builder out, int chunkX, int chunkZ, int startX, int startY, int startZ,
+                             int size, SplittableRandom rand, int oreIndex) {
+        generateVein(out, chunkX, chunkZ, startX, startY, startZ, size, rand, oreIndex, -1);
+    }
+
+    static void generateVein(ChunkVeinPlan.Builder out, int chunkX, int chunkZ, int startX, int startY, int startZ,
+                             int size, SplittableRandom rand, int oreIndex, int depth) {
+        int x = startX;
+        int y = startY;
+        int z = startZ;
+
+        int maxAttempts = size * 3;
+
+        out.beginVein(oreIndex, size, depth);
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (y >= CoalOreConfig.WORLD_MIN_Y && y <= CoalOreConfig.WORLD_MAX_Y) {
+                if ((x >> CoalOreConfig.CHUNK_SHIFT) == chunkX && (z >> CoalOreConfig.CHUNK_SHIFT) == chunkZ) {
+                    out.add(PlacementBuffer.pack(x & CoalOreConfig.CHUNK_MASK, y, z & CoalOreConfig.CHUNK_MASK));
+                } else if (out.keepSpill) {
+                    addSpill(out, x - (chunkX << CoalOreConfig.CHUNK_SHIFT), y, z - (chunkZ << CoalOreConfig.CHUNK_SHIFT));
+                }
+            }
+
+            int direction = rand.nextInt(10);
+            switch (direction) {
+                case 0, 1 -> x++;
+                case 2, 3 -> x--;
+                case 4 -> y++;
+                case 5 -> y--;
+                case 6, 7 -> z++;
+                case 8, 9 -> z--;
+            }
+        }
+        out.endVein();
+    }
+
+    // x/z relative to the chunk's corner; cells past the direct neighbours are dropped
+    private static void addSpill(ChunkVeinPlan.Builder out, int x, int y, int z) {
+        int dx = x >> CoalOreConfig.CHUNK_SHIFT;
+        int dz = z >> CoalOreConfig.CHUNK_SHIFT;
+        if (dx >= -1 && dx <= 1 && dz >= -1 && dz <= 1) {
+            out.addSpill(ChunkVeinPlan.spill(dx, dz,
+                    PlacementBuffer.pack(x & CoalOreConfig.CHUNK_MASK, y, z & CoalOreConfig.CHUNK_MASK)));
+        }
+    }
+
+    static int computeOreY(GenerationPlan.OrePass pass, SplittableRandom random) {
+        return pass.minY + pass.yDistribution.sample(random);
+    }
+
+    // Offset 0 is the deep end, so depths count back from maxDepth
+    static int computeOreDepth(GenerationPlan.OrePass pass, SplittableRandom random) {
+        return pass.maxDepth - pass.depthDistribution.sample(random);
+    }
+
+    // Ordered list of (ore, vein index) pairs for one chunk
+    private static final class VeinTasks {
+        GenerationPlan.OrePass[] passes = new GenerationPlan.OrePass[32];
+        int[] veins = new int[32];
+        int size;
+
+        void add(GenerationPlan.OrePass pass, int veinCount) {
+            if (size + veinCount > passes.length) {
+                int capacity = Math.max(passes.length * 2, size + veinCount);
+                passes = Arrays.copyOf(passes, capacity);
+                veins = Arrays.copyOf(veins, capacity);
+            }
+            for (int i = 0; i < veinCount; i++) {
+                passes[size] = pass;
+                veins[size] = i;
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vein shapes. Each one (except the old random walk) is a fixed list of cell
+ * offsets ordered from the origin outwards, built once when the class loads, so
+ * a vein of n blocks is the first n offsets of one of the 24 rotated copies.
+ * <p>
+ * Offsets are packed one signed byte per axis: {@code (dx + 128) | (dy + 128) << 8 | (dz + 128) << 16}.
+ */
+enum VeinShape {
+    // The original 10-way random walk, for worlds that need the old layouts
+    WALK("Walk", 0, 0, 0, 0),
+    // Roughly round, lumpy clump
+    BLOB("Blob", 1, 1, 1, 0.9),
+    // Stretched along one axis, smooth
+    ELLIPSOID("Ellipsoid", 0.45, 1, 1, 0.25),
+    // One block thick, flat sheet
+    DISC("Disc", 1, 0, 1, 0.4),
+    // Thin wobbly line
+    STRING("String", 0, 0, 0, 0);
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    // Largest vein a template covers; bigger sizes are capped
+    static final int MAX_CELLS = 256;
+    static final int ROTATIONS = 24;
+
+    private static final int BIAS = 128;
+    private static final int EXTENT = 12;
+
+    final String configName;
+
+    // [rotation] -> packed offsets, origin first; null for WALK
+    private final int[][] rotations;
+
+    VeinShape(String configName, double scaleX, double scaleY, double scaleZ, double jitter) {
+        this.configName = configName;
+        if (configName.equals("Walk")) {
+            this.rotations = null;
+        } else if (configName.equals("String")) {
+            this.rotations = Templates.rotateAll(Templates.line());
+        } else {
+            this.rotations = Templates.rotateAll(Templates.body(scaleX, scaleY, scaleZ, jitter));
+        }
+    }
+
+    boolean isTemplate() {
+        return rotations != null;
+    }
+
+    /**
+     * Offsets for one rotation ({@code 0 <= rotation < 24}); a vein of n blocks uses the first n.
+     */
+    int[] template(int rotation) {
+        return rotations[rotation];
+    }
+
+    static int dx(int offset) {
+        return (offset & 0xFF) - BIAS;
+    }
+
+    static int dy(int offset) {
+        return ((offset >> 8) & 0xFF) - BIAS;
+    }
+
+    static int dz(int offset) {
+        return ((offset >> 16) & 0xFF) - BIAS;
+    }
+
+    /**
+     * Shape by config name (case-insensitive). Blank gives {@code fallback};
+     * unknown names are logged and give {@code fallback} too.
+     */
+    static VeinShape byName(String name, VeinShape fallback) {
+        if (name == null || name.isBlank()) {
+            return fallback;
+        }
+        for (VeinShape shape : values()) {
+            if (shape.configName.equalsIgnoreCase(name.trim())) {
+                return shape;
+            }
+        }
+        LOGGER.atWarning().log("Unknown vein shape '%s', using %s", name, fallback.configName);
+        return fallback;
+    }
+
+    private static final class Templates {
+
+        static int pack(int dx, int dy, int dz) {
+            return (dx + BIAS) | (dy + BIAS) << 8 | (dz + BIAS) << 16;
+        }
+
+        /**
+         * Every cell in the box, ordered by scaled distance plus a fixed per-cell
+         * jitter. Axes scaled to 0 stay flat. The origin always comes first.
+         */
+        static int[] body(double scaleX, double scaleY, double scaleZ, double jitter) {
+            List<double[]> cells = new ArrayList<>();
+            for (int y = scaleY == 0 ? 0 : -EXTENT; y <= (scaleY == 0 ? 0 : EXTENT); y++) {
+                for (int z = -EXTENT; z <= EXTENT; z++) {
+                    for (int x = -EXTENT; x <= EXTENT; x++) {
+                        double sx = x * scaleX;
+                        double sy = y * scaleY;
+                        double sz = z * scaleZ;
+                        double distance = Math.sqrt(sx * sx + sy * sy + sz * sz);
+                        if (x != 0 || y != 0 || z != 0) {
+                            distance += jitter * noise(x, y, z);
+                        } else {
+                            distance = -1;
+                        }
+                        cells.add(new double[]{distance, pack(x, y, z)});
+                    }
+                }
+            }
+
+            cells.sort((a, b) -> Double.compare(a[0], b[0]));
+            int[] offsets = new int[MAX_CELLS];
+            for (int i = 0; i < MAX_CELLS; i++) {
+                offsets[i] = (int) cells.get(i)[1];
+            }
+            return offsets;
+        }
+
+        /**
+         * A line growing outwards from the origin in both directions, drifting
+         * one block sideways now and then.
+         */
+        static int[] line() {
+            int[] offsets = new int[MAX_CELLS];
+            int[] drift = new int[2 * MAX_CELLS + 1];
+            int[] lift = new int[2 * MAX_CELLS + 1];
+            for (int dir = -1; dir <= 1; dir += 2) {
+                int side = 0;
+                int up = 0;
+                for (int step = 1; step <= MAX_CELLS; step++) {
+                    double n = noise(step * dir, 7, 3);
+                    if (n > 0.9) side = Math.min(EXTENT, side + 1);
+                    else if (n < 0.1) side = Math.max(-EXTENT, side - 1);
+                    double m = noise(step * dir, 11, 5);
+                    if (m > 0.95) up = Math.min(EXTENT, up + 1);
+                    else if (m < 0.05) up = Math.max(-EXTENT, up - 1);
+                    drift[MAX_CELLS + step * dir] = side;
+                    lift[MAX_CELLS + step * dir] = up;
+                }
+            }
+
+            offsets[0] = pack(0, 0, 0);
+            for (int i = 1; i < MAX_CELLS; i++) {
+                // 1, -1, 2, -2, ... keeps any prefix centred on the origin
+                int step = (i + 1) / 2 * ((i & 1) == 1 ? 1 : -1);
+                int x = Math.max(1 - BIAS, Math.min(BIAS - 1, step));
+                offsets[i] = pack(x, lift[MAX_CELLS + step], drift[MAX_CELLS + step]);
+            }
+            return offsets;
+        }
+
+        /**
+         * The template under all 24 axis-aligned rotations; rotation 0 is the identity.
+         */
+        static int[][] rotateAll(int[] offsets) {
+            int[][] out = new int[ROTATIONS][];
+            int r = 0;
+            int[][] perms = {{0, 1, 2}, {1, 2, 0}, {2, 0, 1}, {0, 2, 1}, {2, 1, 0}, {1, 0, 2}};
+            for (int p = 0; p < perms.length; p++) {
+                boolean oddPerm = p >= 3;
+                for (int signs = 0; signs < 8; signs++) {
+                    int flips = Integer.bitCount(signs);
+                    // Proper rotations only: an odd permutation needs an odd number of flips
+                    if (((flips & 1) == 1) != oddPerm) continue;
+
+                    int[] rotated = new int[offsets.length];
+                    for (int i = 0; i < offsets.length; i++) {
+                        int[] v = {dx(offsets[i]), dy(offsets[i]), dz(offsets[i])};
+                        int[] w = new int[3];
+                        for (int axis = 0; axis < 3; axis++) {
+                            w[axis] = ((signs >> axis) & 1) == 1 ? -v[perms[p][axis]] : v[perms[p][axis]];
+                        }
+                        rotated[i] = pack(w[0], w[1], w[2]);
+                    }
+                    out[r++] = rotated;
+                }
+            }
+            return out;
+        }
+
+        // Fixed hash noise in [0, 1)
+        static double noise(int x, int y, int z) {
+            long h = OreSeeds.mix64(x * 0x9E3779B97F4A7C15L ^ y * 0xC2B2AE3D27D4EB4FL ^ z * 0x165667B19E3779F9L);
+            return (h >>> 11) * 0x1.0p-53;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.worldgen.chunk.ChunkGenerator;
+import com.hypixel.hytale.server.worldgen.zone.Zone;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything natural generation needs about one world: its own generator and
+ * seed (for zones/biomes and vein seeding), its zone/biome cache and its plan
+ * compiled with the world's {@link WorldOverride}. Created on the world's first
+ * chunk and dropped when the world is removed.
+ */
+final class WorldGenContext {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    final String worldName;
+    final long seed;
+
+    // Null when the world doesn't use the standard chunk generator; zone/biome then resolves to unknown
+    final ChunkGenerator generator;
+    final ZoneBiomeResolver resolver;
+
+    // Salts this world's keys in the shared plan store
+    final long storeKey;
+
+    final LongAdder chunksGenerated = new LongAdder();
+
+    // Plan compiled for the snapshot it was built from; recompiled when the snapshot changes
+    private volatile CompiledPlan compiled;
+
+    private WorldGenContext(String worldName, long seed, ChunkGenerator generator) {
+        this.worldName = worldName;
+        this.seed = seed;
+        this.generator = generator;
+        this.resolver = generator != null ? new ZoneBiomeResolver(generator, (int) seed) : null;
+        this.storeKey = storeKey(worldName, seed);
+    }
+
+    /**
+     * The {@link #storeKey} a context of {@code world} has, without creating one.
+     */
+    static long storeKey(World world) {
+        long seed = 0L;
+        try {
+            seed = world.getWorldConfig().getSeed();
+        } catch (Exception e) {
+            GenerationMetrics.GLOBAL.recordSwallowed(e);
+        }
+        return storeKey(world.getName(), seed);
+    }
+
+    private static long storeKey(String worldName, long seed) {
+        return OreSeeds.mix64(OreSeeds.oreKey(worldName, 0) ^ seed);
+    }
+
+    static WorldGenContext create(World world) {
+        String name = world.getName();
+        long seed = 0L;
+        ChunkGenerator generator = null;
+
+        try {
+            seed = world.getWorldConfig().getSeed();
+            Object provided = world.getWorldConfig().getWorldGenProvider().getGenerator();
+            if (provided instanceof ChunkGenerator chunkGenerator) {
+                generator = chunkGenerator;
+            } else {
+                LOGGER.atInfo().log("World '%s' has no standard generator, zone/biome filters won't match there", name);
+            }
+        } catch (Exception e) {
+            LOGGER.atWarning().log("Failed to read generator for world '%s': %s", name, e.getMessage());
+        }
+
+        LOGGER.atInfo().log("Generation context for world '%s' (seed: %d)", name, seed);
+        if (generator != null) {
+            try {
+                for (Zone zone : generator.getZonePatternGenerator((int) seed).getZones()) {
+                    LOGGER.atInfo().log("  Available zone: %s", zone.name());
+                }
+            } catch (Exception e) {
+                // Only informational
+            }
+        }
+
+        return new WorldGenContext(name, seed, generator);
+    }
+
+    /**
+     * This world's plan for {@code snapshot}, or null if the snapshot can't generate.
+     */
+    GenerationPlan planFor(GenerationSnapshot snapshot) {
+        CompiledPlan current = compiled;
+        if (current != null && current.snapshot == snapshot) {
+            return current.plan;
+        }
+        if (snapshot.cache == null) {
+            return null;
+        }
+
+        // Racing threads may both compile; either result is equivalent
+        WorldOverride override = snapshot.config.getWorldOverride(worldName);
+        GenerationPlan plan = override != null
+                ? GenerationPlan.compile(snapshot.config, snapshot.cache, override)
+                : snapshot.plan;
+        compiled = new CompiledPlan(snapshot, plan);
+        return plan;
+    }
+
+    private record CompiledPlan(GenerationSnapshot snapshot, GenerationPlan plan) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live {@link WorldGenContext}s by world name. Lookups after the first chunk of
+ * a world are a single map read; nothing here takes a plugin-wide lock.
+ */
+final class WorldGenContexts {
+
+    private final ConcurrentHashMap<String, WorldGenContext> contexts = new ConcurrentHashMap<>();
+
+    /**
+     * The world's context, created on first use.
+     */
+    WorldGenContext get(World world) {
+        WorldGenContext context = contexts.get(world.getName());
+        if (context != null) {
+            return context;
+        }
+        return contexts.computeIfAbsent(world.getName(), name -> WorldGenContext.create(world));
+    }
+
+    /**
+     * The world's context if one of its chunks has generated already, else null.
+     */
+    WorldGenContext find(World world) {
+        return contexts.get(world.getName());
+    }
+
+    void remove(World world) {
+        contexts.remove(world.getName());
+    }
+
+    Collection<WorldGenContext> all() {
+        return contexts.values();
+    }
+
+    void clear() {
+        contexts.clear();
+    }
+}
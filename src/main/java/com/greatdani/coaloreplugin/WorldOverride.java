@@ -0,0 +1,102 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.codec.Codec;
+import com.hypixel.hytale.codec.KeyedCodec;
+import com.hypixel.hytale.codec.builder.BuilderCodec;
+
+import java.util.Arrays;
+
+/**
+ * Per-world tweaks on top of the global coal settings. Numbers left at -1
+ * inherit the global value. Only settings that don't change the resolved ore
+ * tables can be overridden, so every world shares one block cache.
+ */
+public class WorldOverride {
+    public static final BuilderCodec<WorldOverride> CODEC =
+            BuilderCodec.builder(WorldOverride.class, WorldOverride::new)
+                    .append(new KeyedCodec<String>("World", Codec.STRING),
+                            (o, val, info) -> o.world = val,
+                            (o, info) -> o.world)
+                    .add()
+                    .append(new KeyedCodec<Boolean>("Enabled", Codec.BOOLEAN),
+                            (o, val, info) -> o.enabled = val,
+                            (o, info) -> o.enabled)
+                    .add()
+                    .append(new KeyedCodec<Boolean>("EnableNaturalGeneration", Codec.BOOLEAN),
+                            (o, val, info) -> o.enableNaturalGeneration = val,
+                            (o, info) -> o.enableNaturalGeneration)
+                    .add()
+                    .append(new KeyedCodec<Integer>("VeinsPerChunk", Codec.INTEGER),
+                            (o, val, info) -> o.veinsPerChunk = val,
+                            (o, info) -> o.veinsPerChunk)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MinVeinSize", Codec.INTEGER),
+                            (o, val, info) -> o.minVeinSize = val,
+                            (o, info) -> o.minVeinSize)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxVeinSize", Codec.INTEGER),
+                            (o, val, info) -> o.maxVeinSize = val,
+                            (o, info) -> o.maxVeinSize)
+                    .add()
+                    .append(new KeyedCodec<Double>("SpawnChance", Codec.DOUBLE),
+                            (o, val, info) -> o.spawnChance = val,
+                            (o, info) -> o.spawnChance)
+                    .add()
+                    .append(new KeyedCodec<String[]>("CustomOres", Codec.STRING_ARRAY),
+                            (o, val, info) -> o.customOres = val,
+                            (o, info) -> o.customOres)
+                    .add()
+                    .build();
+
+    private String world = "";
+
+    // false = no ore generation at all in this world
+    private boolean enabled = true;
+    // false = custom ores only (has no effect if coal is off globally)
+    private boolean enableNaturalGeneration = true;
+
+    private int veinsPerChunk = -1;
+    private int minVeinSize = -1;
+    private int maxVeinSize = -1;
+    private double spawnChance = -1;
+
+    // Custom ore names generated in this world (empty = all)
+    private String[] customOres = new String[0];
+
+    public WorldOverride() {
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isNaturalGenerationEnabled(CoalOreConfig cfg) {
+        return cfg.isNaturalGenerationEnabled() && enableNaturalGeneration;
+    }
+
+    public int getVeinsPerChunk(CoalOreConfig cfg) {
+        return veinsPerChunk < 0 ? cfg.getVeinsPerChunk() : Math.max(1, Math.min(80, veinsPerChunk));
+    }
+
+    public int getMinVeinSize(CoalOreConfig cfg) {
+        int min = minVeinSize < 0 ? cfg.getMinVeinSize() : Math.max(1, minVeinSize);
+        return Math.min(min, getMaxVeinSize(cfg));
+    }
+
+    public int getMaxVeinSize(CoalOreConfig cfg) {
+        return maxVeinSize < 0 ? cfg.getMaxVeinSize() : Math.max(1, Math.min(100, maxVeinSize));
+    }
+
+    public double getSpawnChance(CoalOreConfig cfg) {
+        return spawnChance < 0 ? cfg.getSpawnChance() : Math.min(1.0, spawnChance);
+    }
+
+    public boolean allowsCustomOre(String oreName) {
+        if (customOres == null || customOres.length == 0) return true;  // Empty = all custom ores
+        return Arrays.asList(customOres).contains(oreName);
+    }
+}
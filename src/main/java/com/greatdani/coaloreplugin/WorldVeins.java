@@ -0,0 +1,106 @@
+package com.greatdani.coaloreplugin;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Vein placement for the commands: blobs stamped straight into the world
+ * around a point, replacing whatever coal host rock they hit. A vein's cells
+ * are worked out first and sorted into the chunks they land in, then each
+ * chunk is looked up once and written through directly.
+ */
+final class WorldVeins {
+
+    // Command sizes are small numbers (1-20); each step adds this many blocks
+    static final int BLOCKS_PER_SIZE = 6;
+
+    private WorldVeins() {
+    }
+
+    /**
+     * Resolves the chunk a vein touches, or null if it isn't loaded.
+     */
+    @FunctionalInterface
+    interface Chunks {
+        BlockAccess chunk(int chunkX, int chunkZ);
+    }
+
+    static int spawnVeinInWorld(Chunks chunks, BlockCache.BlockCaches cache, int centerX, int centerY, int centerZ,
+                                int size, Random rand) {
+        int[] template = VeinShape.BLOB.template(rand.nextInt(VeinShape.ROTATIONS));
+        int cells = Math.min(template.length, size * BLOCKS_PER_SIZE);
+
+        // Templates reach 12 blocks out, so a vein spans at most the 3x3 chunks around its centre
+        Buckets buckets = Buckets.acquire();
+        int originChunkX = centerX >> CoalOreConfig.CHUNK_SHIFT;
+        int originChunkZ = centerZ >> CoalOreConfig.CHUNK_SHIFT;
+        for (int i = 0; i < cells; i++) {
+            int offset = template[i];
+            int y = centerY + VeinShape.dy(offset);
+            if (y < CoalOreConfig.WORLD_MIN_Y || y > CoalOreConfig.WORLD_MAX_Y) continue;
+
+            int x = centerX + VeinShape.dx(offset);
+            int z = centerZ + VeinShape.dz(offset);
+            int dx = (x >> CoalOreConfig.CHUNK_SHIFT) - originChunkX;
+            int dz = (z >> CoalOreConfig.CHUNK_SHIFT) - originChunkZ;
+            buckets.add((dz + 1) * 3 + dx + 1,
+                    PlacementBuffer.pack(x & CoalOreConfig.CHUNK_MASK, y, z & CoalOreConfig.CHUNK_MASK));
+        }
+
+        int placed = 0;
+        for (int slot = 0; slot < Buckets.SLOTS; slot++) {
+            int count = buckets.sizes[slot];
+            if (count == 0) continue;
+
+            int chunkX = originChunkX + slot % 3 - 1;
+            int chunkZ = originChunkZ + slot / 3 - 1;
+            BlockAccess chunk = chunks.chunk(chunkX, chunkZ);
+            if (chunk == null) continue;
+
+            int chunkBlockX = chunkX << CoalOreConfig.CHUNK_SHIFT;
+            int chunkBlockZ = chunkZ << CoalOreConfig.CHUNK_SHIFT;
+            int[] packed = buckets.cells[slot];
+            for (int i = 0; i < count; i++) {
+                int cell = packed[i];
+                if (placeOreInWorld(chunk, cache,
+                        chunkBlockX + (cell & CoalOreConfig.CHUNK_MASK),
+                        cell >> (2 * CoalOreConfig.CHUNK_SHIFT),
+                        chunkBlockZ + ((cell >> CoalOreConfig.CHUNK_SHIFT) & CoalOreConfig.CHUNK_MASK))) {
+                    placed++;
+                }
+            }
+        }
+
+        return placed;
+    }
+
+    static boolean placeOreInWorld(BlockAccess world, BlockCache.BlockCaches cache, int x, int y, int z) {
+        int currentBlock = world.getBlock(x, y, z);
+
+        // Find matching ore for this stone type
+        BlockCache.OreType ore = cache.getOreForBlock(currentBlock, y);
+
+        return ore != null && world.setBlock(x, y, z, ore);
+    }
+
+    // One vein's cells by chunk, packed chunk-local; one instance per thread, reused
+    private static final class Buckets {
+        static final int SLOTS = 9;
+
+        private static final ThreadLocal<Buckets> LOCAL = ThreadLocal.withInitial(Buckets::new);
+
+        final int[][] cells = new int[SLOTS][VeinShape.MAX_CELLS];
+        final int[] sizes = new int[SLOTS];
+
+        static Buckets acquire() {
+            Buckets buckets = LOCAL.get();
+            Arrays.fill(buckets.sizes, 0);
+            return buckets;
+        }
+
+        // A vein has at most MAX_CELLS cells, so a slot never overflows
+        void add(int slot, int packed) {
+            cells[slot][sizes[slot]++] = packed;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.worldgen.chunk.ChunkGenerator;
+import com.hypixel.hytale.server.worldgen.chunk.ZoneBiomeResult;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the zone and biome at a chunk center once and remembers the answer.
+ * Results live in a striped LRU keyed by chunk index, so re-requested and
+ * neighbouring chunks don't re-run the generator's zone/biome noise.
+ */
+public class ZoneBiomeResolver {
+
+    public static final String UNKNOWN = "unknown";
+
+    // Interned ids shared by every resolver; config allow-lists use the same tables
+    public static final NameTable ZONES = new NameTable();
+    public static final NameTable BIOMES = new NameTable();
+
+    // Zone/biome combinations, so per-place tables (see PlaceRules) need one index
+    public static final PlaceTable PLACES = new PlaceTable();
+
+    private static final int SEGMENTS = 16;
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private final Source source;
+    private final Segment[] segments;
+
+    public ZoneBiomeResolver(ChunkGenerator generator, int seed) {
+        this(forGenerator(generator, seed), DEFAULT_CAPACITY);
+    }
+
+    public ZoneBiomeResolver(Source source, int capacity) {
+        this.source = source;
+        this.segments = new Segment[SEGMENTS];
+        int perSegment = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    public ZoneBiome resolve(int chunkX, int chunkZ) {
+        long key = ChunkUtil.indexChunk(chunkX, chunkZ);
+        Segment segment = segments[segmentFor(key)];
+
+        ZoneBiome cached;
+        synchronized (segment) {
+            cached = segment.get(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        // Evaluate outside the lock; two threads racing on one chunk both get the same answer
+        ZoneBiome result = compute(chunkX, chunkZ);
+        if (result == null) {
+            // Not cached, so a transient failure (e.g. during startup) isn't remembered for the column
+            return ZoneBiome.UNKNOWN;
+        }
+        synchronized (segment) {
+            segment.put(key, result);
+        }
+        return result;
+    }
+
+    // Null when the generator failed
+    private ZoneBiome compute(int chunkX, int chunkZ) {
+        try {
+            int centerX = (chunkX << CoalOreConfig.CHUNK_SHIFT) + CoalOreConfig.CHUNK_SIZE / 2;
+            int centerZ = (chunkZ << CoalOreConfig.CHUNK_SHIFT) + CoalOreConfig.CHUNK_SIZE / 2;
+
+            ZoneBiome result = source.at(centerX, centerZ);
+            return result != null ? result : ZoneBiome.UNKNOWN;
+        } catch (Exception e) {
+            GenerationMetrics.GLOBAL.recordSwallowed(e);
+            return null;
+        }
+    }
+
+    static Source forGenerator(ChunkGenerator generator, int seed) {
+        if (generator == null) {
+            return (x, z) -> ZoneBiome.UNKNOWN;
+        }
+        return (x, z) -> {
+            ZoneBiomeResult result = generator.getZoneBiomeResultAt(seed, x, z);
+            return new ZoneBiome(ZONES.idOf(result.getZoneResult().getZone().name()),
+                    BIOMES.idOf(result.getBiome().getName()));
+        };
+    }
+
+    private static int segmentFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 60) & (SEGMENTS - 1);
+    }
+
+    /**
+     * Where zone/biome answers come from; normally the world's chunk generator.
+     */
+    @FunctionalInterface
+    public interface Source {
+        ZoneBiome at(int blockX, int blockZ) throws Exception;
+    }
+
+    public static final class ZoneBiome {
+        static final ZoneBiome UNKNOWN = new ZoneBiome(ZONES.idOf(ZoneBiomeResolver.UNKNOWN),
+                BIOMES.idOf(ZoneBiomeResolver.UNKNOWN));
+
+        final int zoneId;
+        final int biomeId;
+        final int placeId;
+
+        ZoneBiome(int zoneId, int biomeId) {
+            this.zoneId = zoneId;
+            this.biomeId = biomeId;
+            this.placeId = PLACES.idOf(zoneId, biomeId);
+        }
+
+        String zoneName() {
+            return ZONES.nameOf(zoneId);
+        }
+
+        String biomeName() {
+            return BIOMES.nameOf(biomeId);
+        }
+    }
+
+    /**
+     * Maps names to small dense ids. Ids are never reused, so they can index arrays.
+     */
+    public static final class NameTable {
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[0];
+
+        public int idOf(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            return register(name);
+        }
+
+        private synchronized int register(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            String[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = name;
+            names = grown;
+            ids.put(name, current.length);
+            return current.length;
+        }
+
+        public String nameOf(int id) {
+            String[] current = names;
+            return id >= 0 && id < current.length ? current[id] : UNKNOWN;
+        }
+
+        public int size() {
+            return names.length;
+        }
+    }
+
+    /**
+     * Dense ids for the zone/biome pairs seen so far. Ids are never reused either.
+     */
+    public static final class PlaceTable {
+        private final ConcurrentHashMap<Long, Integer> ids = new ConcurrentHashMap<>();
+        private volatile long[] places = new long[0];
+
+        public int idOf(int zoneId, int biomeId) {
+            long key = ((long) zoneId << 32) | (biomeId & 0xFFFFFFFFL);
+            Integer id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            return register(key);
+        }
+
+        private synchronized int register(long key) {
+            Integer id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            long[] current = places;
+            long[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = key;
+            places = grown;
+            ids.put(key, current.length);
+            return current.length;
+        }
+
+        public int zoneOf(int id) {
+            return (int) (places[id] >> 32);
+        }
+
+        public int biomeOf(int id) {
+            return (int) places[id];
+        }
+
+        public int size() {
+            return places.length;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<Long, ZoneBiome> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ZoneBiome> eldest) {
+            return size() > capacity;
+        }
+    }
+}
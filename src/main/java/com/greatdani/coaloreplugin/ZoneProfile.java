@@ -0,0 +1,109 @@
+package com.greatdani.coaloreplugin;
+
+import com.hypixel.hytale.codec.Codec;
+import com.hypixel.hytale.codec.KeyedCodec;
+import com.hypixel.hytale.codec.builder.BuilderCodec;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Named settings for an ore in some zones or biomes, picked by the ore's
+ * {@code Profiles} list; the first profile whose Zones and Biomes patterns
+ * match the chunk wins. Patterns may use {@code *} for any run of characters,
+ * an empty list matches everything. Numbers left at -1 inherit the ore's own
+ * value, and the Y range can only narrow the ore's MinY/MaxY.
+ */
+public class ZoneProfile {
+    public static final BuilderCodec<ZoneProfile> CODEC =
+            BuilderCodec.builder(ZoneProfile.class, ZoneProfile::new)
+                    .append(new KeyedCodec<String>("Name", Codec.STRING),
+                            (p, val, info) -> p.name = val,
+                            (p, info) -> p.name)
+                    .add()
+                    .append(new KeyedCodec<String[]>("Zones", Codec.STRING_ARRAY),
+                            (p, val, info) -> p.zones = val,
+                            (p, info) -> p.zones)
+                    .add()
+                    .append(new KeyedCodec<String[]>("Biomes", Codec.STRING_ARRAY),
+                            (p, val, info) -> p.biomes = val,
+                            (p, info) -> p.biomes)
+                    .add()
+                    .append(new KeyedCodec<Integer>("VeinsPerChunk", Codec.INTEGER),
+                            (p, val, info) -> p.veinsPerChunk = val,
+                            (p, info) -> p.veinsPerChunk)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MinVeinSize", Codec.INTEGER),
+                            (p, val, info) -> p.minVeinSize = val,
+                            (p, info) -> p.minVeinSize)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxVeinSize", Codec.INTEGER),
+                            (p, val, info) -> p.maxVeinSize = val,
+                            (p, info) -> p.maxVeinSize)
+                    .add()
+                    .append(new KeyedCodec<Double>("SpawnChance", Codec.DOUBLE),
+                            (p, val, info) -> p.spawnChance = val,
+                            (p, info) -> p.spawnChance)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MinY", Codec.INTEGER),
+                            (p, val, info) -> p.minY = val,
+                            (p, info) -> p.minY)
+                    .add()
+                    .append(new KeyedCodec<Integer>("MaxY", Codec.INTEGER),
+                            (p, val, info) -> p.maxY = val,
+                            (p, info) -> p.maxY)
+                    .add()
+                    .build();
+
+    private String name = "";
+    private String[] zones = new String[0];
+    private String[] biomes = new String[0];
+
+    private int veinsPerChunk = -1;
+    private int minVeinSize = -1;
+    private int maxVeinSize = -1;
+    private double spawnChance = -1;
+    private int minY = -1;
+    private int maxY = -1;
+
+    public ZoneProfile() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getZones() {
+        return zones == null ? List.of() : Arrays.asList(zones);
+    }
+
+    public List<String> getBiomes() {
+        return biomes == null ? List.of() : Arrays.asList(biomes);
+    }
+
+    public int getVeinsPerChunk(int inherited) {
+        return veinsPerChunk < 0 ? inherited : Math.max(1, Math.min(80, veinsPerChunk));
+    }
+
+    public int getMinVeinSize(int inherited, int inheritedMax) {
+        int min = minVeinSize < 0 ? inherited : Math.max(1, minVeinSize);
+        return Math.min(min, getMaxVeinSize(inheritedMax));
+    }
+
+    public int getMaxVeinSize(int inherited) {
+        return maxVeinSize < 0 ? inherited : Math.max(1, Math.min(100, maxVeinSize));
+    }
+
+    public double getSpawnChance(double inherited) {
+        return spawnChance < 0 ? inherited : Math.min(1.0, spawnChance);
+    }
+
+    public int getMinY(int inheritedMin, int inheritedMax) {
+        int min = minY < 0 ? inheritedMin : Math.max(inheritedMin, minY);
+        return Math.min(min, getMaxY(inheritedMin, inheritedMax) - 1);
+    }
+
+    public int getMaxY(int inheritedMin, int inheritedMax) {
+        return maxY < 0 ? inheritedMax : Math.max(inheritedMin + 1, Math.min(inheritedMax, maxY));
+    }
+}
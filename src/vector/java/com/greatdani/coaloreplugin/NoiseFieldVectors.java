@@ -0,0 +1,96 @@
+package com.greatdani.coaloreplugin;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link NoiseField} layers on the Vector API. Built in its own source set with
+ * the {@code jdk.incubator.vector} module added, and only looked up by name when
+ * that module is present, so nothing else in the plugin refers to it directly.
+ */
+final class NoiseFieldVectors extends NoiseField.Layers {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    private NoiseFieldVectors() {
+    }
+
+    /**
+     * Null when the preferred vector doesn't split a layer evenly or is too narrow to be worth it.
+     */
+    static NoiseField.Layers create() {
+        int lanes = FLOATS.length();
+        if (lanes < 4 || NoiseField.LANES % lanes != 0) {
+            return null;
+        }
+        return new NoiseFieldVectors();
+    }
+
+    @Override
+    void gradients(NoiseField.Slab s, int hy0, int hy1) {
+        for (int corner = 0; corner < 8; corner++) {
+            int hy = (corner & 2) == 0 ? hy0 : hy1;
+            int[] hxz = s.corners[(corner & 1) | (corner >> 1 & 2)];
+            float[] gx = s.gradients[corner * 3];
+            float[] gy = s.gradients[corner * 3 + 1];
+            float[] gz = s.gradients[corner * 3 + 2];
+            for (int i = 0; i < NoiseField.LANES; i += FLOATS.length()) {
+                IntVector h = IntVector.fromArray(INTS, hxz, i).lanewise(VectorOperators.XOR, hy);
+                h = h.lanewise(VectorOperators.XOR, h.lanewise(VectorOperators.LSHR, 16)).mul(0x7FEB352D);
+                h = h.lanewise(VectorOperators.XOR, h.lanewise(VectorOperators.LSHR, 15)).mul(0x846CA68B);
+                h = h.lanewise(VectorOperators.XOR, h.lanewise(VectorOperators.LSHR, 16));
+
+                component(h).intoArray(gx, i);
+                component(h.lanewise(VectorOperators.LSHR, 10)).intoArray(gy, i);
+                component(h.lanewise(VectorOperators.LSHR, 20)).intoArray(gz, i);
+            }
+        }
+    }
+
+    private static FloatVector component(IntVector bits) {
+        FloatVector f = (FloatVector) bits.and(1023).convert(VectorOperators.I2F, 0);
+        return f.mul(NoiseField.GRADIENT_SCALE).sub(1f);
+    }
+
+    @Override
+    void level(NoiseField.Slab s, float ty0, float ty1, float v, float[] out) {
+        float[][] g = s.gradients;
+        for (int i = 0; i < NoiseField.LANES; i += FLOATS.length()) {
+            FloatVector tx0 = FloatVector.fromArray(FLOATS, s.tx0, i);
+            FloatVector tx1 = FloatVector.fromArray(FLOATS, s.tx1, i);
+            FloatVector tz0 = FloatVector.fromArray(FLOATS, s.tz0, i);
+            FloatVector tz1 = FloatVector.fromArray(FLOATS, s.tz1, i);
+            FloatVector c000 = dot(g, 0, i, tx0, ty0, tz0);
+            FloatVector c100 = dot(g, 1, i, tx1, ty0, tz0);
+            FloatVector c010 = dot(g, 2, i, tx0, ty1, tz0);
+            FloatVector c110 = dot(g, 3, i, tx1, ty1, tz0);
+            FloatVector c001 = dot(g, 4, i, tx0, ty0, tz1);
+            FloatVector c101 = dot(g, 5, i, tx1, ty0, tz1);
+            FloatVector c011 = dot(g, 6, i, tx0, ty1, tz1);
+            FloatVector c111 = dot(g, 7, i, tx1, ty1, tz1);
+
+            FloatVector u = FloatVector.fromArray(FLOATS, s.fadeX, i);
+            FloatVector a = c000.add(c100.sub(c000).mul(u));
+            FloatVector b = c010.add(c110.sub(c010).mul(u));
+            FloatVector c = c001.add(c101.sub(c001).mul(u));
+            FloatVector d = c011.add(c111.sub(c011).mul(u));
+            FloatVector e = a.add(b.sub(a).mul(v));
+            FloatVector f = c.add(d.sub(c).mul(v));
+            e.add(f.sub(e).mul(FloatVector.fromArray(FLOATS, s.fadeZ, i))).intoArray(out, i);
+        }
+    }
+
+    private static FloatVector dot(float[][] g, int corner, int i, FloatVector tx, float ty, FloatVector tz) {
+        return FloatVector.fromArray(FLOATS, g[corner * 3], i).mul(tx)
+                .add(FloatVector.fromArray(FLOATS, g[corner * 3 + 1], i).mul(ty))
+                .add(FloatVector.fromArray(FLOATS, g[corner * 3 + 2], i).mul(tz));
+    }
+
+    @Override
+    String describe() {
+        return "Vector API, " + FLOATS.length() + " lanes";
+    }
+}